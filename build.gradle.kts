@@ -6,6 +6,7 @@ plugins {
     id("com.gradleup.shadow") version "9.3.0"
     id("de.eldoria.plugin-yml.bukkit") version "0.8.0"
     id("net.kyori.indra.git") version "3.0.1"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 repositories {
@@ -14,14 +15,34 @@ repositories {
     maven("https://oss.sonatype.org/content/groups/public/")
 }
 
+val paperApi = "io.papermc.paper:paper-api:1.21.11-R0.1-SNAPSHOT"
+
 dependencies {
-    compileOnly("io.papermc.paper:paper-api:1.21.11-R0.1-SNAPSHOT")
+    compileOnly(paperApi)
+
+    // The benchmarks run on a headless stand-in for the server, but still need the API classes
+    jmh(paperApi)
+
+    // So do the tests, which reuse the headless server of the benchmarks
+    testImplementation(paperApi)
+    testImplementation(sourceSets["jmh"].output)
+    testImplementation(platform("org.junit:junit-bom:5.10.2"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 java {
     toolchain.languageVersion.set(JavaLanguageVersion.of(21))
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+}
+
 tasks {
     withType<JavaCompile> {
         options.encoding = Charsets.UTF_8.name()
@@ -38,6 +59,36 @@ tasks {
     build {
         dependsOn(shadowJar)
     }
+
+    test {
+        useJUnitPlatform()
+    }
+
+    register<JavaExec>("allocationCheck") {
+        group = "verification"
+        // Not part of check: the budgets depend on the JVM, run it explicitly when touching a hot path
+        description = "Fails when the hot paths of SmartInvs allocate more than their recorded budget."
+
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass.set("fr.minuskube.inv.AllocationCheck")
+
+        args(file("src/jmh/resources/allocation-budgets.properties").absolutePath)
+        if (project.hasProperty("recordAllocations")) {
+            args("--record")
+        }
+    }
+
+    register<JavaExec>("loadSimulation") {
+        group = "verification"
+        description = "Simulates thousands of players using SmartInvs menus on a headless server."
+
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass.set("fr.minuskube.inv.LoadSimulator")
+
+        listOf("players", "ticks", "seed").forEach { option ->
+            project.findProperty(option)?.let { args("--$option", it.toString()) }
+        }
+    }
 }
 
 bukkit {
@@ -48,4 +99,12 @@ bukkit {
     main = "${project.group}.SmartInvsPlugin"
     version = indraGit.commit()?.name?.take(7)
     apiVersion = "1.21"
+
+    commands {
+        register("smartinvs") {
+            description = "Shows the sessions, update tasks and metrics of SmartInvs"
+            usage = "/smartinvs [sessions|tasks|metrics|dump]"
+            permission = "smartinvs.admin"
+        }
+    }
 }
\ No newline at end of file
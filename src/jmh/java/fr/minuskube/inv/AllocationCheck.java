@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.InventoryProvider;
+import fr.minuskube.inv.headless.FakeInventory;
+import fr.minuskube.inv.headless.FakeItemStack;
+import fr.minuskube.inv.headless.HeadlessServer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * Measures the bytes allocated per operation on the hot paths of SmartInvs
+ * (click dispatch, slot writes and update cycles) on the {@link HeadlessServer},
+ * and fails when a path allocates more than its recorded budget.
+ * </p>
+ *
+ * <p>
+ * Every operation is warmed up before being measured, so the allocations
+ * removed by the JIT compiler are not counted. The headless fakes allocate
+ * a constant amount of their own (proxy arguments), which is part of the budgets.
+ * </p>
+ *
+ * <p>
+ * Usage: <code>./gradlew allocationCheck</code>, or
+ * <code>./gradlew allocationCheck -PrecordAllocations</code> to record the
+ * current allocations as the new budgets.
+ * </p>
+ */
+public class AllocationCheck {
+
+    private static final int SESSIONS = 100;
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 200_000;
+
+    /**
+     * Measured allocations may exceed the budgets by this ratio, or by
+     * {@link #SLACK} bytes for the smallest budgets, before failing,
+     * to absorb the noise of the JIT compiler.
+     */
+    private static final double TOLERANCE = 0.10;
+    private static final long SLACK = 16;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private InventoryManager manager;
+    private HeadlessEvents events;
+    private Player[] players;
+    private InventoryContents contents;
+    private InventoryClickEvent itemClick, emptyClick, foreignClick, shiftClick;
+
+    private final ClickableItem filler = ClickableItem.shared(new FakeItemStack("GLASS_PANE"));
+    private final ClickableItem icon = ClickableItem.shared(new FakeItemStack("ARROW", "Next"), data -> {});
+    private boolean toggle;
+
+    public static void main(String[] args) throws IOException {
+        if(args.length == 0)
+            throw new IllegalArgumentException("Usage: AllocationCheck <budgets file> [--record]");
+
+        Path budgetsFile = Paths.get(args[0]);
+        boolean record = args.length > 1 && args[1].equals("--record");
+
+        Map<String, Double> measured = new AllocationCheck().measure();
+
+        if(record) {
+            // Written by hand, Properties#store neither sorts the keys nor omits the date
+            try(Writer writer = Files.newBufferedWriter(budgetsFile)) {
+                writer.write("# Bytes allocated per operation, recorded by AllocationCheck" + System.lineSeparator());
+                writer.write("# on Java " + System.getProperty("java.version") + System.lineSeparator());
+
+                for(Map.Entry<String, Double> entry : new TreeMap<>(measured).entrySet())
+                    writer.write(entry.getKey() + "=" + (long) Math.ceil(entry.getValue()) + System.lineSeparator());
+            }
+
+            measured.forEach((operation, bytes) -> System.out.printf("%-24s %10.1f B/op (recorded)%n", operation, bytes));
+            return;
+        }
+
+        Properties budgets = new Properties();
+        try(Reader reader = Files.newBufferedReader(budgetsFile)) {
+            budgets.load(reader);
+        }
+
+        boolean failed = false;
+        for(Map.Entry<String, Double> entry : measured.entrySet()) {
+            String budgetValue = budgets.getProperty(entry.getKey());
+
+            if(budgetValue == null) {
+                System.out.printf("%-24s %10.1f B/op (no budget)%n", entry.getKey(), entry.getValue());
+                failed = true;
+                continue;
+            }
+
+            long budget = Long.parseLong(budgetValue);
+            boolean over = entry.getValue() > Math.max(budget * (1 + TOLERANCE), budget + SLACK);
+
+            System.out.printf("%-24s %10.1f B/op (budget %d)%s%n", entry.getKey(), entry.getValue(), budget,
+                    over ? " OVER BUDGET" : "");
+            failed |= over;
+        }
+
+        if(failed) {
+            System.err.println("Some hot paths allocate more than their recorded budget.");
+            System.err.println("If this is expected, record new budgets with ./gradlew allocationCheck -PrecordAllocations");
+            System.exit(1);
+        }
+    }
+
+    public Map<String, Double> measure() {
+        setUp();
+
+        Map<String, Double> results = new LinkedHashMap<>();
+        results.put("click.item", measure(() -> this.events.fire(this.itemClick)));
+        results.put("click.emptySlot", measure(() -> this.events.fire(this.emptyClick)));
+        results.put("click.shift", measure(() -> this.events.fire(this.shiftClick)));
+        results.put("click.foreign", measure(() -> this.events.fire(this.foreignClick)));
+        results.put("contents.set", measure(() -> this.contents.set(2, 4, (this.toggle = !this.toggle) ? this.icon : this.filler)));
+        results.put("contents.setUnchanged", measure(() -> this.contents.set(3, 4, this.icon)));
+        results.put("contents.fillBorders", measure(() -> this.contents.fillBorders((this.toggle = !this.toggle) ? this.icon : this.filler)));
+
+        // A tick runs the update task of every session
+        results.put("update.session", measure(() -> HeadlessServer.get().getScheduler().tick()) / SESSIONS);
+
+        return results;
+    }
+
+    private double measure(Runnable operation) {
+        for(int i = 0; i < WARMUP; i++)
+            operation.run();
+
+        long threadId = Thread.currentThread().getId();
+        long start = this.threads.getThreadAllocatedBytes(threadId);
+
+        for(int i = 0; i < ITERATIONS; i++)
+            operation.run();
+
+        return (this.threads.getThreadAllocatedBytes(threadId) - start) / (double) ITERATIONS;
+    }
+
+    private void setUp() {
+        HeadlessServer server = HeadlessServer.get();
+
+        this.manager = new InventoryManager(server.getPlugin());
+        this.manager.init();
+        this.events = new HeadlessEvents(this.manager);
+
+        SmartInventory inventory = SmartInventory.builder()
+                .id("allocation")
+                .size(6, 9)
+                .updateFrequency(1)
+                .manager(this.manager)
+                .provider(new InventoryProvider() {
+                    @Override
+                    public void init(Player player, InventoryContents contents) {
+                        contents.fillBorders(filler);
+                        contents.set(1, 4, icon);
+                    }
+
+                    @Override
+                    public void update(Player player, InventoryContents contents) {
+                        // A typical update setting the same items again
+                        contents.set(1, 4, icon);
+                        contents.set(0, 0, filler);
+                    }
+                })
+                .build();
+
+        this.players = new Player[SESSIONS];
+        for(int i = 0; i < SESSIONS; i++) {
+            this.players[i] = server.join("allocation" + i);
+            inventory.open(this.players[i]);
+        }
+
+        Player player = this.players[0];
+        this.contents = this.manager.getContents(player).orElseThrow(IllegalStateException::new);
+
+        this.itemClick = new InventoryClickEvent(player.getOpenInventory(),
+                InventoryType.SlotType.CONTAINER, 13, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+        this.emptyClick = new InventoryClickEvent(player.getOpenInventory(),
+                InventoryType.SlotType.CONTAINER, 22, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+        this.shiftClick = new InventoryClickEvent(player.getOpenInventory(),
+                InventoryType.SlotType.QUICKBAR, 60, ClickType.SHIFT_LEFT, InventoryAction.MOVE_TO_OTHER_INVENTORY);
+
+        Player outsider = server.join("outsider");
+        outsider.openInventory(FakeInventory.create(null, InventoryType.CHEST, 27));
+        this.foreignClick = new InventoryClickEvent(outsider.getOpenInventory(),
+                InventoryType.SlotType.CONTAINER, 4, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.headless.FakeInventory;
+import fr.minuskube.inv.headless.HeadlessServer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the dispatch of an {@link InventoryClickEvent} by the shared
+ * {@link SmartInvsDispatcher}: on a clickable item of a SmartInvs inventory,
+ * on an empty slot, and in an inventory which isn't managed by SmartInvs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ClickDispatchBenchmark {
+
+    private SmartInvsDispatcher listener;
+
+    private InventoryClickEvent itemClick, emptyClick, foreignClick;
+    private Player outsider;
+
+    @Setup
+    public void setup(MenuSessions sessions) {
+        this.listener = (SmartInvsDispatcher) SmartInvsDispatcher.find();
+
+        Player player = sessions.players[0];
+        this.itemClick = new InventoryClickEvent(player.getOpenInventory(),
+                InventoryType.SlotType.CONTAINER, 13, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+        this.emptyClick = new InventoryClickEvent(player.getOpenInventory(),
+                InventoryType.SlotType.CONTAINER, 22, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+
+        this.outsider = HeadlessServer.get().join("outsider");
+        this.outsider.openInventory(FakeInventory.create(null, InventoryType.CHEST, 27));
+        this.foreignClick = new InventoryClickEvent(this.outsider.getOpenInventory(),
+                InventoryType.SlotType.CONTAINER, 4, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+    }
+
+    @TearDown
+    public void tearDown() {
+        HeadlessServer.get().quit(this.outsider);
+    }
+
+    @Benchmark
+    public boolean clickItem() {
+        this.listener.onInventoryClick(this.itemClick);
+        return this.itemClick.isCancelled();
+    }
+
+    @Benchmark
+    public boolean clickEmptySlot() {
+        this.listener.onInventoryClick(this.emptyClick);
+        return this.emptyClick.isCancelled();
+    }
+
+    @Benchmark
+    public boolean clickForeignInventory() {
+        this.listener.onInventoryClick(this.foreignClick);
+        return this.foreignClick.isCancelled();
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.util.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the slot writes of {@link InventoryContents.Impl}.
+ * <br>
+ * The written items alternate, so every write reaches the opened inventory,
+ * except for {@link #setUnchanged(MenuSessions)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ContentsBenchmark {
+
+    private Pattern<ClickableItem> pattern;
+    private int slot;
+    private boolean toggle;
+
+    @Setup
+    public void setup(MenuSessions sessions) {
+        this.pattern = new Pattern<ClickableItem>(
+                "xxxxxxxxx",
+                "x       x",
+                "x  a a  x",
+                "x       x",
+                "x       x",
+                "xxxxxxxxx")
+                .attach('x', sessions.filler)
+                .attach('a', sessions.icon);
+    }
+
+    private ClickableItem next(MenuSessions sessions) {
+        this.toggle = !this.toggle;
+        return this.toggle ? sessions.icon : sessions.filler;
+    }
+
+    @Benchmark
+    public InventoryContents set(MenuSessions sessions) {
+        this.slot = (this.slot + 1) % 54;
+        return sessions.contents.set(this.slot, next(sessions));
+    }
+
+    @Benchmark
+    public InventoryContents setUnchanged(MenuSessions sessions) {
+        return sessions.contents.set(2, 4, sessions.icon);
+    }
+
+    @Benchmark
+    public InventoryContents fill(MenuSessions sessions) {
+        return sessions.contents.fill(next(sessions));
+    }
+
+    @Benchmark
+    public InventoryContents fillRow(MenuSessions sessions) {
+        return sessions.contents.fillRow(3, next(sessions));
+    }
+
+    @Benchmark
+    public InventoryContents fillColumn(MenuSessions sessions) {
+        return sessions.contents.fillColumn(4, next(sessions));
+    }
+
+    @Benchmark
+    public InventoryContents fillBorders(MenuSessions sessions) {
+        return sessions.contents.fillBorders(next(sessions));
+    }
+
+    @Benchmark
+    public InventoryContents fillRect(MenuSessions sessions) {
+        return sessions.contents.fillRect(1, 1, 4, 7, next(sessions));
+    }
+
+    @Benchmark
+    public InventoryContents fillPattern(MenuSessions sessions) {
+        sessions.contents.fill(null);
+        return sessions.contents.fillPattern(this.pattern);
+    }
+
+}
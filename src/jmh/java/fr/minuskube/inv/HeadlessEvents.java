@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.InventoryView;
+
+/**
+ * Fires the inventory events of the headless players to the shared
+ * {@link SmartInvsDispatcher}, and their lifecycle events to the listener
+ * of an {@link InventoryManager}, as the server would.
+ * <br>
+ * The manager must have been initialized.
+ */
+public class HeadlessEvents {
+
+    private final SmartInvsDispatcher dispatcher;
+    private final InventoryManager.InvListener listener;
+
+    public HeadlessEvents(InventoryManager manager) {
+        this.dispatcher = (SmartInvsDispatcher) SmartInvsDispatcher.find();
+        this.listener = manager.new InvListener();
+    }
+
+    /**
+     * Clicks on the given raw slot of the inventory opened by the player.
+     *
+     * @return the fired event
+     */
+    public InventoryClickEvent click(Player player, int rawSlot, ClickType click, InventoryAction action) {
+        InventoryView view = player.getOpenInventory();
+        InventoryType.SlotType slotType = rawSlot < view.getTopInventory().getSize()
+                ? InventoryType.SlotType.CONTAINER
+                : InventoryType.SlotType.QUICKBAR;
+
+        InventoryClickEvent event = new InventoryClickEvent(view, slotType, rawSlot, click, action);
+        this.dispatcher.onInventoryClick(event);
+        return event;
+    }
+
+    public InventoryClickEvent click(Player player, int rawSlot) {
+        return click(player, rawSlot, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+    }
+
+    /**
+     * Fires an already created click event again.
+     */
+    public void fire(InventoryClickEvent event) {
+        event.setCancelled(false);
+        this.dispatcher.onInventoryClick(event);
+    }
+
+    /**
+     * Closes the inventory opened by the player.
+     */
+    public void close(Player player) {
+        InventoryCloseEvent event = new InventoryCloseEvent(player.getOpenInventory());
+        this.dispatcher.onInventoryClose(event);
+        player.closeInventory();
+    }
+
+    /**
+     * Disconnects the player.
+     */
+    public void quit(Player player) {
+        this.listener.onPlayerQuit(new PlayerQuitEvent(player, Component.empty(), PlayerQuitEvent.QuitReason.DISCONNECTED));
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.InventoryProvider;
+import fr.minuskube.inv.content.Pagination;
+import fr.minuskube.inv.content.SlotIterator;
+import fr.minuskube.inv.headless.FakeItemStack;
+import fr.minuskube.inv.headless.HeadlessScheduler;
+import fr.minuskube.inv.headless.HeadlessServer;
+import org.bukkit.entity.Player;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * <p>
+ * Drives an {@link InventoryManager} on the {@link HeadlessServer} with
+ * thousands of simulated players, and reports how the cost of a server tick
+ * scales with the amount of open menus.
+ * </p>
+ *
+ * <p>
+ * On every tick, each player follows a scripted mix of actions: players without
+ * a menu may open one, and players with a menu may click a slot, flip a page,
+ * or close it. The scheduler then runs the update tasks of the open menus.
+ * The CPU time and the allocated bytes of the whole tick are measured on the
+ * simulation thread.
+ * </p>
+ *
+ * <p>
+ * Usage: <code>./gradlew loadSimulation -Pplayers=100,1000,5000 -Pticks=600</code>
+ * </p>
+ */
+public class LoadSimulator {
+
+    private static final double OPEN_CHANCE = 0.05;
+    private static final double CLICK_CHANCE = 0.20;
+    private static final double PAGE_CHANCE = 0.05;
+    private static final double CLOSE_CHANCE = 0.02;
+
+    private static final int WARMUP_TICKS = 100;
+
+    private final int playerCount;
+    private final int ticks;
+    private final SplittableRandom random;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final HeadlessServer server = HeadlessServer.get();
+    private final HeadlessScheduler scheduler = server.getScheduler();
+
+    private InventoryManager manager;
+    private HeadlessEvents events;
+    private SmartInventory shop, confirm;
+    private final List<Player> players = new ArrayList<>();
+
+    public LoadSimulator(int playerCount, int ticks, long seed) {
+        this.playerCount = playerCount;
+        this.ticks = ticks;
+        this.random = new SplittableRandom(seed);
+    }
+
+    public static void main(String[] args) {
+        int[] playerCounts = { 100, 500, 1000, 2500, 5000 };
+        int ticks = 600;
+        long seed = 42;
+
+        for(int i = 0; i + 1 < args.length; i += 2) {
+            switch(args[i]) {
+                case "--players":
+                    playerCounts = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "--ticks":
+                    ticks = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        System.out.printf("%8s %10s %10s %10s %10s %10s %12s %10s%n",
+                "players", "sessions", "mean ms", "p50 ms", "p95 ms", "max ms", "alloc MB/s", "tasks");
+
+        for(int playerCount : playerCounts) {
+            Report report = new LoadSimulator(playerCount, ticks, seed).run();
+            System.out.println(report);
+        }
+    }
+
+    public Report run() {
+        setUp();
+
+        for(int tick = 0; tick < WARMUP_TICKS; tick++)
+            tick();
+
+        long[] cpu = new long[this.ticks];
+        long allocated = 0;
+        long sessions = 0;
+
+        long threadId = Thread.currentThread().getId();
+        for(int tick = 0; tick < this.ticks; tick++) {
+            long cpuStart = this.threads.getCurrentThreadCpuTime();
+            long allocStart = this.threads.getThreadAllocatedBytes(threadId);
+
+            tick();
+
+            cpu[tick] = this.threads.getCurrentThreadCpuTime() - cpuStart;
+            allocated += this.threads.getThreadAllocatedBytes(threadId) - allocStart;
+            sessions += openSessions();
+        }
+
+        Report report = new Report(this.playerCount, sessions / (double) this.ticks, cpu,
+                allocated / (double) this.ticks, this.scheduler.getPendingTasks());
+
+        tearDown();
+        return report;
+    }
+
+    private void setUp() {
+        this.manager = new InventoryManager(server.getPlugin());
+        this.manager.init();
+        this.events = new HeadlessEvents(this.manager);
+
+        ClickableItem filler = ClickableItem.shared(new FakeItemStack("GLASS_PANE"));
+        ClickableItem[] entries = new ClickableItem[200];
+        for(int i = 0; i < entries.length; i++)
+            entries[i] = ClickableItem.from(new FakeItemStack("PAPER", "Entry " + i), data -> {});
+
+        this.confirm = SmartInventory.builder()
+                .id("confirm")
+                .size(3, 9)
+                .manager(this.manager)
+                .provider(new InventoryProvider() {
+                    @Override
+                    public void init(Player player, InventoryContents contents) {
+                        contents.fill(filler);
+                        contents.set(1, 2, ClickableItem.shared(new FakeItemStack("LIME_WOOL", "Confirm"),
+                                data -> confirm.close(data.getPlayer())));
+                        contents.set(1, 6, ClickableItem.shared(new FakeItemStack("RED_WOOL", "Cancel"),
+                                data -> shop.open(data.getPlayer())));
+                    }
+
+                    @Override
+                    public void update(Player player, InventoryContents contents) {}
+                })
+                .build();
+
+        this.shop = SmartInventory.builder()
+                .id("shop")
+                .size(6, 9)
+                .updateFrequency(1)
+                .manager(this.manager)
+                .provider(new InventoryProvider() {
+                    @Override
+                    public void init(Player player, InventoryContents contents) {
+                        contents.fillBorders(filler);
+
+                        Pagination pagination = contents.pagination();
+                        pagination.setItems(entries);
+                        pagination.setItemsPerPage(28);
+
+                        SlotIterator iterator = contents.newIterator(SlotIterator.Type.HORIZONTAL, 1, 1);
+                        for(int row = 1; row < 5; row++) {
+                            iterator.blacklist(row, 0);
+                            iterator.blacklist(row, 8);
+                        }
+                        pagination.addToIterator(iterator);
+
+                        contents.set(5, 3, ClickableItem.shared(new FakeItemStack("ARROW", "Previous"),
+                                data -> shop.open(player, pagination.previous().getPage())));
+                        contents.set(5, 5, ClickableItem.shared(new FakeItemStack("ARROW", "Next"),
+                                data -> shop.open(player, pagination.next().getPage())));
+                        contents.set(5, 8, ClickableItem.shared(new FakeItemStack("BARRIER", "Buy"),
+                                data -> confirm.open(player)));
+                    }
+
+                    @Override
+                    public void update(Player player, InventoryContents contents) {
+                        long second = scheduler.getCurrentTick() / 20;
+                        contents.set(0, 4, ClickableItem.empty(new FakeItemStack("CLOCK", "Second " + second)));
+                    }
+                })
+                .build();
+
+        for(int i = 0; i < this.playerCount; i++)
+            this.players.add(this.server.join("simulated" + i));
+    }
+
+    private void tearDown() {
+        for(Player player : this.players) {
+            this.manager.getInventory(player).ifPresent(inv -> inv.close(player));
+            this.events.quit(player);
+            this.server.quit(player);
+        }
+
+        // Let the cancelled tasks leave the scheduler
+        this.scheduler.tick();
+    }
+
+    private void tick() {
+        for(Player player : this.players)
+            act(player);
+
+        this.scheduler.tick();
+    }
+
+    private void act(Player player) {
+        SmartInventory inventory = this.manager.getInventory(player).orElse(null);
+        double roll = this.random.nextDouble();
+
+        if(inventory == null) {
+            if(roll < OPEN_CHANCE)
+                this.shop.open(player);
+            return;
+        }
+
+        int size = inventory.getRows() * inventory.getColumns();
+
+        if(roll < CLICK_CHANCE) {
+            this.events.click(player, this.random.nextInt(size));
+        }
+        else if(roll < CLICK_CHANCE + PAGE_CHANCE) {
+            if(inventory == this.shop)
+                this.events.click(player, 9 * 5 + (this.random.nextBoolean() ? 3 : 5));
+        }
+        else if(roll < CLICK_CHANCE + PAGE_CHANCE + CLOSE_CHANCE) {
+            this.events.close(player);
+        }
+    }
+
+    private int openSessions() {
+        return this.manager.getOpenedPlayers(this.shop).size() + this.manager.getOpenedPlayers(this.confirm).size();
+    }
+
+    public static final class Report {
+
+        private final int players;
+        private final double sessions;
+        private final double meanMillis, p50Millis, p95Millis, maxMillis;
+        private final double allocatedPerTick;
+        private final int pendingTasks;
+
+        private Report(int players, double sessions, long[] cpu, double allocatedPerTick, int pendingTasks) {
+            long[] sorted = cpu.clone();
+            Arrays.sort(sorted);
+
+            this.players = players;
+            this.sessions = sessions;
+            this.meanMillis = Arrays.stream(cpu).average().orElse(0) / 1e6;
+            this.p50Millis = sorted[sorted.length / 2] / 1e6;
+            this.p95Millis = sorted[(int) (sorted.length * 0.95)] / 1e6;
+            this.maxMillis = sorted[sorted.length - 1] / 1e6;
+            this.allocatedPerTick = allocatedPerTick;
+            this.pendingTasks = pendingTasks;
+        }
+
+        public double getMeanMillis() { return meanMillis; }
+        public double getP95Millis() { return p95Millis; }
+        public double getAllocatedPerTick() { return allocatedPerTick; }
+
+        @Override
+        public String toString() {
+            // A server runs 20 ticks per second
+            return String.format("%8d %10.0f %10.3f %10.3f %10.3f %10.3f %12.2f %10d",
+                    players, sessions, meanMillis, p50Millis, p95Millis, maxMillis,
+                    allocatedPerTick * 20 / (1024 * 1024), pendingTasks);
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.InventoryProvider;
+import fr.minuskube.inv.headless.FakeItemStack;
+import fr.minuskube.inv.headless.HeadlessServer;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Opens the same 6x9 {@link SmartInventory} for a given amount of players
+ * on the {@link HeadlessServer}, the benchmarks then work on the contents
+ * of the first player.
+ */
+@State(Scope.Benchmark)
+public class MenuSessions {
+
+    @Param({ "1", "100", "1000" })
+    public int sessions;
+
+    public InventoryManager manager;
+    public SmartInventory inventory;
+    public Player[] players;
+
+    public InventoryContents contents;
+
+    public final ClickableItem filler = ClickableItem.shared(new FakeItemStack("GLASS_PANE"));
+    public final ClickableItem icon = ClickableItem.shared(new FakeItemStack("ARROW", "Next"), data -> {});
+
+    @Setup(Level.Trial)
+    public void open() {
+        HeadlessServer server = HeadlessServer.get();
+
+        this.manager = new InventoryManager(server.getPlugin());
+        this.manager.init();
+
+        this.inventory = SmartInventory.builder()
+                .id("benchmark")
+                .size(6, 9)
+                .manager(this.manager)
+                .provider(new InventoryProvider() {
+                    @Override
+                    public void init(Player player, InventoryContents contents) {
+                        contents.fillBorders(filler);
+                        contents.set(1, 4, icon);
+                    }
+
+                    @Override
+                    public void update(Player player, InventoryContents contents) {}
+                })
+                .build();
+
+        this.players = new Player[this.sessions];
+        for(int i = 0; i < this.sessions; i++) {
+            this.players[i] = server.join("player" + i);
+            this.inventory.open(this.players[i]);
+        }
+
+        this.contents = this.manager.getContents(this.players[0]).orElseThrow(IllegalStateException::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        HeadlessServer server = HeadlessServer.get();
+
+        for(Player player : this.players) {
+            this.inventory.close(player);
+            server.quit(player);
+        }
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.Pagination;
+import fr.minuskube.inv.content.SlotIterator;
+import fr.minuskube.inv.headless.FakeItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Pagination#getPageItems()} and {@link Pagination#addToIterator(SlotIterator)}
+ * with 500 items, 28 per page.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PaginationBenchmark {
+
+    private Pagination pagination;
+    private SlotIterator iterator;
+
+    @Setup
+    public void setup(MenuSessions sessions) {
+        ClickableItem[] items = new ClickableItem[500];
+        for(int i = 0; i < items.length; i++)
+            items[i] = ClickableItem.empty(new FakeItemStack("PAPER", "Entry " + i));
+
+        this.pagination = sessions.contents.pagination();
+        this.pagination.setItems(items);
+        this.pagination.setItemsPerPage(28);
+
+        this.iterator = sessions.contents.newIterator(SlotIterator.Type.HORIZONTAL, 1, 1);
+        for(int row = 1; row < 5; row++) {
+            this.iterator.blacklist(row, 0);
+            this.iterator.blacklist(row, 8);
+        }
+    }
+
+    private void flip() {
+        if(this.pagination.isLast())
+            this.pagination.first();
+        else
+            this.pagination.next();
+    }
+
+    @Benchmark
+    public ClickableItem[] getPageItems() {
+        flip();
+        return this.pagination.getPageItems();
+    }
+
+    @Benchmark
+    public Pagination addToIterator() {
+        flip();
+        this.iterator.reset();
+        return this.pagination.addToIterator(this.iterator);
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.util.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Pattern#getObject(int, int)}, with and without wrap around.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PatternBenchmark {
+
+    private final Pattern<Boolean> pattern = new Pattern<Boolean>(
+            "xxxxxxxxx",
+            "x       x",
+            "x  o o  x",
+            "x       x",
+            "x       x",
+            "xxxxxxxxx")
+            .attach('x', true)
+            .attach('o', false)
+            .setDefault(false);
+
+    private final Pattern<Boolean> repeating = new Pattern<Boolean>(true,
+            "xo",
+            "ox")
+            .attach('x', true)
+            .attach('o', false);
+
+    private int index;
+
+    @Benchmark
+    public Boolean getObject() {
+        this.index = (this.index + 1) % 54;
+        return this.pattern.getObject(this.index / 9, this.index % 9);
+    }
+
+    @Benchmark
+    public Boolean getObjectWrapAround() {
+        this.index = (this.index + 1) % 54;
+        return this.repeating.getObject(this.index / 9, this.index % 9);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.SlotIterator;
+import fr.minuskube.inv.util.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link SlotIterator#next()}, without any restriction,
+ * with blacklisted slots and with a pattern.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SlotIteratorBenchmark {
+
+    private SlotIterator horizontal, blacklisted, patterned;
+
+    @Setup
+    public void setup(MenuSessions sessions) {
+        this.horizontal = sessions.contents.newIterator(SlotIterator.Type.HORIZONTAL, 0, 0);
+
+        this.blacklisted = sessions.contents.newIterator(SlotIterator.Type.HORIZONTAL, 0, 0);
+        for(int column = 0; column < 9; column++) {
+            this.blacklisted.blacklist(0, column);
+            this.blacklisted.blacklist(5, column);
+        }
+
+        this.patterned = sessions.contents.newIterator(SlotIterator.Type.VERTICAL, 0, 0)
+                .withPattern(new Pattern<Boolean>(
+                        "         ",
+                        " ooooooo ",
+                        " ooooooo ",
+                        " ooooooo ",
+                        " ooooooo ",
+                        "         ")
+                        .attach('o', true));
+    }
+
+    private static SlotIterator next(SlotIterator iterator) {
+        if(iterator.ended())
+            iterator.reset();
+
+        return iterator.next();
+    }
+
+    @Benchmark
+    public SlotIterator next() {
+        return next(this.horizontal);
+    }
+
+    @Benchmark
+    public SlotIterator nextBlacklisted() {
+        return next(this.blacklisted);
+    }
+
+    @Benchmark
+    public SlotIterator nextWithPattern() {
+        return next(this.patterned);
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.headless;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Base of the dynamic proxies standing in for the Bukkit interfaces.
+ * <br>
+ * Only the methods used by SmartInvs are implemented by the subclasses,
+ * every other method does nothing and returns the default value of its type.
+ */
+abstract class FakeHandler implements InvocationHandler {
+
+    private final String name;
+    private Integer hash;
+
+    FakeHandler(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Handles a call to the proxy.
+     *
+     * @return the result of the call, or {@link #UNHANDLED} to return the default value
+     */
+    abstract Object handle(Object proxy, String method, Object[] args) throws Throwable;
+
+    static final Object UNHANDLED = new Object();
+    private static final Object[] NO_ARGS = new Object[0];
+
+    @Override
+    public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch(method.getName()) {
+            case "hashCode":
+                if(method.getParameterCount() == 0) {
+                    // Boxed once, proxies are used as map keys on the hot paths
+                    if(this.hash == null)
+                        this.hash = System.identityHashCode(proxy);
+                    return this.hash;
+                }
+                break;
+            case "equals":
+                if(method.getParameterCount() == 1)
+                    return proxy == args[0];
+                break;
+            case "toString":
+                if(method.getParameterCount() == 0)
+                    return this.name;
+                break;
+        }
+
+        Object result = handle(proxy, method.getName(), args == null ? NO_ARGS : args);
+        return result == UNHANDLED ? defaultValue(method.getReturnType()) : result;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T proxy(Class<T> type, FakeHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if(!type.isPrimitive() || type == void.class)
+            return null;
+        if(type == boolean.class)
+            return false;
+        if(type == char.class)
+            return '\0';
+        if(type == long.class)
+            return 0L;
+        if(type == float.class)
+            return 0F;
+        if(type == double.class)
+            return 0D;
+        if(type == byte.class)
+            return (byte) 0;
+        if(type == short.class)
+            return (short) 0;
+
+        return 0;
+    }
+
+}
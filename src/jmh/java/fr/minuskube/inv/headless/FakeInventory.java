@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.headless;
+
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An in-memory {@link Inventory}, storing the items as they are given.
+ */
+public final class FakeInventory extends FakeHandler {
+
+    private final InventoryHolder holder;
+    private final InventoryType type;
+    private final ItemStack[] items;
+    private final List<HumanEntity> viewers = new ArrayList<>();
+
+    private FakeInventory(InventoryHolder holder, InventoryType type, int size) {
+        super("FakeInventory{" + type + ", " + size + "}");
+
+        this.holder = holder;
+        this.type = type;
+        this.items = new ItemStack[size];
+    }
+
+    public static Inventory create(InventoryHolder holder, InventoryType type, int size) {
+        return proxy(Inventory.class, new FakeInventory(holder, type, size));
+    }
+
+    public static Inventory create(InventoryHolder holder, InventoryType type) {
+        return create(holder, type, type == InventoryType.CHEST ? 27 : type.getDefaultSize());
+    }
+
+    @Override
+    Object handle(Object proxy, String method, Object[] args) {
+        switch(method) {
+            case "getSize":
+                return this.items.length;
+            case "getItem":
+                return this.items[(int) args[0]];
+            case "setItem":
+                this.items[(int) args[0]] = (ItemStack) args[1];
+                return null;
+            case "clear":
+                if(args.length == 0)
+                    Arrays.fill(this.items, null);
+                else
+                    this.items[(int) args[0]] = null;
+                return null;
+            case "getContents":
+            case "getStorageContents":
+                return this.items.clone();
+            case "getHolder":
+                return this.holder;
+            case "getType":
+                return this.type;
+            case "getViewers":
+                return this.viewers;
+            default:
+                return UNHANDLED;
+        }
+    }
+
+}
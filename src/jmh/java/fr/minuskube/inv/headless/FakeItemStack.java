@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.headless;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Objects;
+
+/**
+ * An {@link ItemStack} which does not need a running server,
+ * identified by a type name, a display name and an amount.
+ * <br>
+ * It has no {@link org.bukkit.inventory.meta.ItemMeta}.
+ */
+public class FakeItemStack extends ItemStack {
+
+    private final String type;
+    private final String name;
+    private int amount;
+
+    public FakeItemStack(String type, String name, int amount) {
+        this.type = Objects.requireNonNull(type);
+        this.name = name;
+        this.amount = amount;
+    }
+
+    public FakeItemStack(String type, String name) {
+        this(type, name, 1);
+    }
+
+    public FakeItemStack(String type) {
+        this(type, null, 1);
+    }
+
+    public String getTypeName() { return type; }
+    public String getName() { return name; }
+
+    @Override
+    public int getAmount() {
+        return amount;
+    }
+
+    @Override
+    public void setAmount(int amount) {
+        this.amount = amount;
+    }
+
+    @Override
+    public boolean hasItemMeta() {
+        return false;
+    }
+
+    @Override
+    public boolean isSimilar(ItemStack stack) {
+        if(stack == this)
+            return true;
+        if(!(stack instanceof FakeItemStack))
+            return false;
+
+        FakeItemStack other = (FakeItemStack) stack;
+        return this.type.equals(other.type) && Objects.equals(this.name, other.name);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof FakeItemStack
+                && isSimilar((FakeItemStack) obj)
+                && this.amount == ((FakeItemStack) obj).amount;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = type.hashCode();
+        result = 31 * result + Objects.hashCode(name);
+        result = 31 * result + amount;
+
+        return result;
+    }
+
+    @Override
+    public FakeItemStack clone() {
+        return new FakeItemStack(this.type, this.name, this.amount);
+    }
+
+    @Override
+    public String toString() {
+        return "FakeItemStack{" +
+                "type='" + type + '\'' +
+                ", name='" + name + '\'' +
+                ", amount=" + amount +
+                '}';
+    }
+
+}
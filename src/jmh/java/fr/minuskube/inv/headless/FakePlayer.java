@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.headless;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+
+/**
+ * A {@link Player} which is always online, has every permission,
+ * and keeps track of the inventory it has open.
+ * <br>
+ * Unlike a real server, opening or closing an inventory does not fire any event,
+ * the harnesses call the listeners of the {@link fr.minuskube.inv.InventoryManager} themselves.
+ */
+public final class FakePlayer extends FakeHandler {
+
+    private final String name;
+    private final UUID uniqueId;
+    private final Inventory inventory;
+    private final Inventory crafting;
+
+    private Player player;
+    private InventoryView view;
+    private boolean online = true;
+    private long inventoryUpdates;
+
+    private FakePlayer(String name) {
+        super("FakePlayer{" + name + "}");
+
+        this.name = name;
+        this.uniqueId = UUID.nameUUIDFromBytes(name.getBytes());
+        this.inventory = FakeInventory.create(null, InventoryType.PLAYER, 36);
+        this.crafting = FakeInventory.create(null, InventoryType.CRAFTING, 5);
+    }
+
+    public static Player create(String name) {
+        FakePlayer handler = new FakePlayer(name);
+
+        handler.player = proxy(Player.class, handler);
+        handler.view = FakeView.create(handler.player, handler.crafting, handler.inventory, "Crafting");
+        return handler.player;
+    }
+
+    public static FakePlayer of(Player player) {
+        return (FakePlayer) Proxy.getInvocationHandler(player);
+    }
+
+    @Override
+    Object handle(Object proxy, String method, Object[] args) {
+        switch(method) {
+            case "getName":
+                return this.name;
+            case "getUniqueId":
+                return this.uniqueId;
+            case "isOnline":
+            case "isValid":
+                return this.online;
+            case "hasPermission":
+                return true;
+            case "getInventory":
+                return this.inventory;
+            case "getOpenInventory":
+                return this.view;
+            case "openInventory":
+                if(args[0] instanceof Inventory) {
+                    Inventory top = (Inventory) args[0];
+                    this.view = FakeView.create(this.player, top, this.inventory, "");
+                }
+                return this.view;
+            case "closeInventory":
+                this.view = FakeView.create(this.player, this.crafting, this.inventory, "Crafting");
+                return null;
+            case "updateInventory":
+                this.inventoryUpdates++;
+                return null;
+            default:
+                return UNHANDLED;
+        }
+    }
+
+    /**
+     * Makes this player appear offline, as after a disconnection.
+     */
+    public void disconnect() {
+        this.online = false;
+    }
+
+    public Player getPlayer() { return player; }
+    public InventoryView getView() { return view; }
+    public long getInventoryUpdates() { return inventoryUpdates; }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.headless;
+
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * An {@link InventoryView} linking a top inventory to the inventory of a {@link FakePlayer}.
+ * <br>
+ * Raw slots are numbered as on a real server: the slots of the top inventory first,
+ * then the slots of the player inventory.
+ */
+final class FakeView extends FakeHandler {
+
+    private final HumanEntity player;
+    private final Inventory top, bottom;
+    private String title;
+    private ItemStack cursor;
+
+    private FakeView(HumanEntity player, Inventory top, Inventory bottom, String title) {
+        super("FakeView{" + player.getName() + "}");
+
+        this.player = player;
+        this.top = top;
+        this.bottom = bottom;
+        this.title = title;
+    }
+
+    static InventoryView create(HumanEntity player, Inventory top, Inventory bottom, String title) {
+        return proxy(InventoryView.class, new FakeView(player, top, bottom, title));
+    }
+
+    @Override
+    Object handle(Object proxy, String method, Object[] args) {
+        switch(method) {
+            case "getTopInventory":
+                return this.top;
+            case "getBottomInventory":
+                return this.bottom;
+            case "getPlayer":
+                return this.player;
+            case "getType":
+                return this.top.getType();
+            case "getTitle":
+            case "getOriginalTitle":
+                return this.title;
+            case "setTitle":
+                this.title = (String) args[0];
+                return null;
+            case "countSlots":
+                return this.top.getSize() + this.bottom.getSize();
+            case "getInventory": {
+                int rawSlot = (int) args[0];
+                if(rawSlot < 0)
+                    return null;
+
+                return rawSlot < this.top.getSize() ? this.top : this.bottom;
+            }
+            case "convertSlot": {
+                int rawSlot = (int) args[0];
+                return rawSlot < this.top.getSize() ? rawSlot : rawSlot - this.top.getSize();
+            }
+            case "getSlotType":
+                return null;
+            case "getCursor":
+                return this.cursor;
+            case "setCursor":
+                this.cursor = (ItemStack) args[0];
+                return null;
+            case "getItem": {
+                int rawSlot = (int) args[0];
+                return rawSlot < this.top.getSize() ? this.top.getItem(rawSlot) : this.bottom.getItem(rawSlot - this.top.getSize());
+            }
+            case "close":
+                this.player.closeInventory();
+                return null;
+            default:
+                return UNHANDLED;
+        }
+    }
+
+}
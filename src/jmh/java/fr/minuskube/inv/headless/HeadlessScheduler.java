@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.headless;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * A {@link BukkitScheduler} running its tasks only when {@link #tick()} is called,
+ * on the calling thread.
+ * <br>
+ * Asynchronous tasks are run like synchronous tasks.
+ */
+public final class HeadlessScheduler extends FakeHandler {
+
+    private final BukkitScheduler scheduler;
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>(
+            Comparator.comparingLong((Task task) -> task.nextRun).thenComparingInt(task -> task.id));
+    private final Map<Integer, Task> tasks = new HashMap<>();
+
+    private long currentTick;
+    private int nextId = 1;
+
+    HeadlessScheduler() {
+        super("HeadlessScheduler");
+        this.scheduler = proxy(BukkitScheduler.class, this);
+    }
+
+    /**
+     * Advances the scheduler by one tick, running all the tasks due for this tick.
+     *
+     * @return the amount of tasks run
+     */
+    public int tick() {
+        this.currentTick++;
+
+        int run = 0;
+        while(!this.queue.isEmpty() && this.queue.peek().nextRun <= this.currentTick) {
+            Task task = this.queue.poll();
+            if(task.cancelled)
+                continue;
+
+            task.run();
+            run++;
+
+            if(task.period > 0 && !task.cancelled) {
+                task.nextRun += task.period;
+                this.queue.add(task);
+            }
+            else
+                this.tasks.remove(task.id);
+        }
+
+        return run;
+    }
+
+    public long getCurrentTick() { return currentTick; }
+    public int getPendingTasks() { return tasks.size(); }
+
+    BukkitScheduler asBukkit() { return scheduler; }
+
+    @Override
+    Object handle(Object proxy, String method, Object[] args) {
+        switch(method) {
+            case "runTask":
+            case "runTaskAsynchronously":
+                return schedule((Plugin) args[0], args[1], 0, -1);
+            case "runTaskLater":
+            case "runTaskLaterAsynchronously":
+                return schedule((Plugin) args[0], args[1], (long) args[2], -1);
+            case "runTaskTimer":
+            case "runTaskTimerAsynchronously":
+                return schedule((Plugin) args[0], args[1], (long) args[2], (long) args[3]);
+            case "scheduleSyncDelayedTask":
+                return schedule((Plugin) args[0], args[1], args.length > 2 ? (long) args[2] : 0, -1).getTaskId();
+            case "scheduleSyncRepeatingTask":
+                return schedule((Plugin) args[0], args[1], (long) args[2], (long) args[3]).getTaskId();
+            case "cancelTask": {
+                Task task = this.tasks.remove((int) args[0]);
+                if(task != null)
+                    task.cancelled = true;
+                return null;
+            }
+            case "cancelTasks":
+                this.tasks.values().removeIf(task -> {
+                    if(task.owner != args[0])
+                        return false;
+
+                    task.cancelled = true;
+                    return true;
+                });
+                return null;
+            case "isQueued":
+                return this.tasks.containsKey((int) args[0]);
+            case "isCurrentlyRunning":
+                return false;
+            default:
+                return UNHANDLED;
+        }
+    }
+
+    private BukkitTask schedule(Plugin owner, Object runnable, long delay, long period) {
+        Task task = new Task(this.nextId++, owner, runnable, period);
+        task.nextRun = this.currentTick + Math.max(1, delay);
+
+        this.tasks.put(task.id, task);
+        this.queue.add(task);
+        return task.handle;
+    }
+
+    private final class Task extends FakeHandler {
+
+        private final int id;
+        private final Plugin owner;
+        private final Object runnable;
+        private final long period;
+        private final BukkitTask handle;
+
+        private long nextRun;
+        private boolean cancelled;
+
+        private Task(int id, Plugin owner, Object runnable, long period) {
+            super("Task{" + id + "}");
+
+            this.id = id;
+            this.owner = owner;
+            this.runnable = runnable;
+            this.period = period;
+            this.handle = proxy(BukkitTask.class, this);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void run() {
+            if(this.runnable instanceof Runnable)
+                ((Runnable) this.runnable).run();
+            else
+                ((Consumer<BukkitTask>) this.runnable).accept(this.handle);
+        }
+
+        @Override
+        Object handle(Object proxy, String method, Object[] args) {
+            switch(method) {
+                case "getTaskId":
+                    return this.id;
+                case "getOwner":
+                    return this.owner;
+                case "isSync":
+                    return true;
+                case "isCancelled":
+                    return this.cancelled;
+                case "cancel":
+                    this.cancelled = true;
+                    tasks.remove(this.id);
+                    return null;
+                default:
+                    return UNHANDLED;
+            }
+        }
+
+    }
+
+}
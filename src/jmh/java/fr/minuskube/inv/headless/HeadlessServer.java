@@ -0,0 +1,371 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.headless;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.ServiceUnregisterEvent;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.RegisteredServiceProvider;
+import org.bukkit.plugin.ServicePriority;
+import org.bukkit.plugin.ServicesManager;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An in-memory stand-in for the Bukkit {@link Server}, installed
+ * as the {@link Bukkit} server so SmartInvs can run without
+ * a Minecraft server.
+ * <br>
+ * It provides {@link FakeInventory inventories}, {@link FakePlayer players},
+ * a {@link HeadlessScheduler} driven by the harness, and {@link Plugin plugins}
+ * owning the listeners, tasks and services registered through them.
+ * <br>
+ * Events called through the plugin manager are given to the registered listeners,
+ * by priority. Disabling a plugin fires its {@link PluginDisableEvent}, then cancels
+ * its tasks and unregisters its services and listeners, as the server would.
+ */
+public final class HeadlessServer extends FakeHandler {
+
+    private static HeadlessServer instance;
+
+    private final Server server;
+    private final PluginManager pluginManager;
+    private final ServicesManager servicesManager;
+    private final Plugin plugin;
+    private final HeadlessScheduler scheduler = new HeadlessScheduler();
+    private final Logger logger = Logger.getLogger("HeadlessServer");
+
+    private final Map<UUID, Player> players = new LinkedHashMap<>();
+    private final List<Registration> listeners = new ArrayList<>();
+    private final List<RegisteredServiceProvider<?>> services = new ArrayList<>();
+
+    private HeadlessServer() {
+        super("HeadlessServer");
+
+        this.server = proxy(Server.class, this);
+        this.plugin = createPlugin("HeadlessPlugin");
+        this.pluginManager = proxy(PluginManager.class, new FakeHandler("HeadlessPluginManager") {
+            @Override
+            Object handle(Object proxy, String method, Object[] args) {
+                switch(method) {
+                    case "registerEvents":
+                        listeners.add(new Registration((Plugin) args[1], (Listener) args[0], null, null, null, false));
+                        return null;
+                    case "registerEvent":
+                        listeners.add(new Registration((Plugin) args[4], (Listener) args[1], (Class<?>) args[0],
+                                (EventPriority) args[2], (EventExecutor) args[3], args.length > 5 && (boolean) args[5]));
+                        return null;
+                    case "callEvent":
+                        call((Event) args[0]);
+                        return null;
+                    case "isPluginEnabled":
+                        return args[0] instanceof Plugin && ((Plugin) args[0]).isEnabled();
+                    default:
+                        return UNHANDLED;
+                }
+            }
+        });
+        this.servicesManager = proxy(ServicesManager.class, new FakeHandler("HeadlessServicesManager") {
+            @Override
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            Object handle(Object proxy, String method, Object[] args) {
+                switch(method) {
+                    case "register":
+                        services.add(new RegisteredServiceProvider((Class) args[0], args[1],
+                                (ServicePriority) args[3], (Plugin) args[2]));
+                        return null;
+                    case "unregister":
+                        Object provider = args[args.length - 1];
+                        services.removeIf(registration -> registration.getProvider() == provider);
+                        return null;
+                    case "unregisterAll":
+                        services.removeIf(registration -> registration.getPlugin() == args[0]);
+                        return null;
+                    case "getRegistrations":
+                        if(!(args[0] instanceof Class))
+                            return UNHANDLED;
+
+                        return services.stream()
+                                .filter(registration -> registration.getService() == args[0])
+                                .collect(Collectors.toList());
+                    case "getRegistration":
+                        return services.stream()
+                                .filter(registration -> registration.getService() == args[0])
+                                .findFirst().orElse(null);
+                    case "load":
+                        return services.stream()
+                                .filter(registration -> registration.getService() == args[0])
+                                .map(RegisteredServiceProvider::getProvider)
+                                .findFirst().orElse(null);
+                    default:
+                        return UNHANDLED;
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the headless server, installing it as the Bukkit server on the first call.
+     *
+     * @return the headless server
+     */
+    public static synchronized HeadlessServer get() {
+        if(instance == null) {
+            instance = new HeadlessServer();
+
+            // Bukkit#setServer logs the build information of the server implementation, which doesn't exist here
+            try {
+                Field server = Bukkit.class.getDeclaredField("server");
+                server.setAccessible(true);
+                server.set(null, instance.server);
+            } catch(ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not install the headless server.", e);
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Creates a new online {@link FakePlayer}.
+     *
+     * @param name the name of the player
+     * @return the player
+     */
+    public Player join(String name) {
+        Player player = FakePlayer.create(name);
+        this.players.put(player.getUniqueId(), player);
+        return player;
+    }
+
+    /**
+     * Disconnects the given player.
+     *
+     * @param player the player
+     */
+    public void quit(Player player) {
+        this.players.remove(player.getUniqueId());
+        FakePlayer.of(player).disconnect();
+    }
+
+    /**
+     * Creates a new enabled plugin, for example to give each test its own
+     * listeners and tasks, dropped with {@link #disable(Plugin)}.
+     *
+     * @param name the name of the plugin
+     * @return the plugin
+     */
+    public Plugin createPlugin(String name) {
+        return proxy(Plugin.class, new HeadlessPlugin(name));
+    }
+
+    /**
+     * Disables the given plugin created by {@link #createPlugin(String)}.
+     *
+     * @param plugin the plugin
+     */
+    public void disable(Plugin plugin) {
+        HeadlessPlugin handler = (HeadlessPlugin) Proxy.getInvocationHandler(plugin);
+        if(!handler.enabled)
+            return;
+
+        handler.enabled = false;
+        call(new PluginDisableEvent(plugin));
+
+        this.scheduler.asBukkit().cancelTasks(plugin);
+
+        List<RegisteredServiceProvider<?>> owned = this.services.stream()
+                .filter(registration -> registration.getPlugin() == plugin)
+                .collect(Collectors.toList());
+
+        this.services.removeAll(owned);
+        owned.forEach(registration -> call(new ServiceUnregisterEvent(registration)));
+
+        this.listeners.removeIf(registration -> registration.plugin == plugin);
+    }
+
+    private void call(Event event) {
+        for(EventPriority priority : EventPriority.values()) {
+            // Handling an event can register or unregister listeners
+            for(Registration registration : this.listeners.toArray(new Registration[0]))
+                registration.call(event, priority);
+        }
+    }
+
+    /**
+     * The plugin used by the benchmarks, never disabled.
+     *
+     * @return the plugin
+     */
+    public Plugin getPlugin() { return plugin; }
+    public HeadlessScheduler getScheduler() { return scheduler; }
+    public Collection<Player> getPlayers() { return Collections.unmodifiableCollection(players.values()); }
+    public int getRegisteredListeners() { return listeners.size(); }
+
+    @Override
+    Object handle(Object proxy, String method, Object[] args) {
+        switch(method) {
+            case "getName":
+                return "HeadlessServer";
+            case "getVersion":
+            case "getBukkitVersion":
+            case "getMinecraftVersion":
+                return "headless";
+            case "getLogger":
+                return this.logger;
+            case "getPluginManager":
+                return this.pluginManager;
+            case "getServicesManager":
+                return this.servicesManager;
+            case "getScheduler":
+                return this.scheduler.asBukkit();
+            case "isPrimaryThread":
+                return true;
+            case "getCurrentTick":
+                return (int) this.scheduler.getCurrentTick();
+            case "getOnlinePlayers":
+                return Collections.unmodifiableCollection(this.players.values());
+            case "getPlayer":
+                if(args[0] instanceof UUID)
+                    return this.players.get(args[0]);
+
+                return this.players.values().stream()
+                        .filter(player -> player.getName().equals(args[0]))
+                        .findAny().orElse(null);
+            case "createInventory": {
+                InventoryHolder holder = (InventoryHolder) args[0];
+
+                if(args[1] instanceof InventoryType)
+                    return FakeInventory.create(holder, (InventoryType) args[1]);
+
+                return FakeInventory.create(holder, InventoryType.CHEST, (int) args[1]);
+            }
+            default:
+                return UNHANDLED;
+        }
+    }
+
+    private final class HeadlessPlugin extends FakeHandler {
+
+        private final String name;
+        private boolean enabled = true;
+
+        HeadlessPlugin(String name) {
+            super(name);
+            this.name = name;
+        }
+
+        @Override
+        Object handle(Object proxy, String method, Object[] args) {
+            switch(method) {
+                case "getName":
+                    return this.name;
+                case "isEnabled":
+                    return this.enabled;
+                case "getLogger":
+                    return logger;
+                case "getServer":
+                    return server;
+                case "getDataFolder":
+                    return new File(System.getProperty("java.io.tmpdir"), this.name);
+                default:
+                    return UNHANDLED;
+            }
+        }
+
+    }
+
+    /**
+     * A listener registered by a plugin, either with its {@link EventHandler} methods
+     * or for a single event with an {@link EventExecutor}.
+     */
+    private final class Registration {
+
+        private final Plugin plugin;
+        private final Listener listener;
+        private final Class<?> event;
+        private final EventPriority priority;
+        private final EventExecutor executor;
+        private final boolean ignoreCancelled;
+
+        Registration(Plugin plugin, Listener listener, Class<?> event, EventPriority priority,
+                     EventExecutor executor, boolean ignoreCancelled) {
+            this.plugin = plugin;
+            this.listener = listener;
+            this.event = event;
+            this.priority = priority;
+            this.executor = executor;
+            this.ignoreCancelled = ignoreCancelled;
+        }
+
+        void call(Event called, EventPriority calledPriority) {
+            try {
+                if(this.executor != null) {
+                    if(this.priority == calledPriority && this.event.isInstance(called) && !skipped(called, this.ignoreCancelled))
+                        this.executor.execute(this.listener, called);
+                    return;
+                }
+
+                for(Method method : this.listener.getClass().getMethods()) {
+                    EventHandler handler = method.getAnnotation(EventHandler.class);
+
+                    if(handler == null || handler.priority() != calledPriority || method.getParameterCount() != 1
+                            || !method.getParameterTypes()[0].isInstance(called) || skipped(called, handler.ignoreCancelled()))
+                        continue;
+
+                    method.setAccessible(true);
+                    method.invoke(this.listener, called);
+                }
+            } catch(Exception e) {
+                Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+                logger.log(Level.SEVERE, "Could not pass " + called.getEventName() + " to " + this.plugin.getName(), cause);
+            }
+        }
+
+        private boolean skipped(Event called, boolean ignoreCancelled) {
+            return ignoreCancelled && called instanceof Cancellable && ((Cancellable) called).isCancelled();
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import com.google.common.base.Preconditions;
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.SlotPos;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * The data of a click handled asynchronously, given to the consumers
+ * of the items created with {@link ClickableItem#async(ItemStack, Consumer)}.
+ * </p>
+ *
+ * <p>
+ * The consumer runs on a virtual thread, so it can block (database queries,
+ * web requests, ...) without freezing the server. It must not touch the
+ * inventory nor the Bukkit API directly: the results are applied back to the
+ * inventory with {@link #sync(Consumer)}, on the main thread.
+ * <br>
+ * The async clicks of a player are handled in order, one after the other.
+ * If the player closes the inventory (or opens another one) first,
+ * the pending clicks are dropped, the running one is interrupted,
+ * and the <code>sync</code> calls are ignored, even if the inventory is restored
+ * by the reopen cache ({@link SmartInventory.Builder#reopenCache(int)}) afterwards.
+ * </p>
+ *
+ * <p>
+ * The click event has already been handled when the consumer runs,
+ * so cancelling it has no effect.
+ * </p>
+ *
+ * <p>
+ * Example:
+ * <pre>{@code
+ * ClickableItem.async(buyIcon, data -> {
+ *     boolean bought = shop.purchase(data.getPlayer().getUniqueId(), product);  // blocking
+ *
+ *     data.sync(contents -> contents.set(data.getSlot(), bought ? boughtItem : failedItem));
+ * });
+ * }</pre>
+ * </p>
+ */
+public class AsyncClickData extends ItemClickData {
+
+    private final SmartInventoryHolder session;
+    private final int generation;
+
+    private AsyncClickData(Event event, Player player, ItemStack item, SlotPos slot, SmartInventoryHolder session) {
+        super(event, player, item, slot, session.getContents());
+        this.session = session;
+        this.generation = session.getGeneration();
+    }
+
+    /**
+     * Submits the given consumer to the async executor of the session
+     * the given click comes from.
+     */
+    static void submit(ItemClickData data, Consumer<AsyncClickData> consumer) {
+        InventoryContents contents = data.getContents().orElseThrow(() ->
+                new IllegalStateException("Async items can only be clicked in a SmartInvs inventory."));
+
+        SmartInventoryHolder session = contents.holder();
+        AsyncClickData asyncData = new AsyncClickData(data.getEvent(), data.getPlayer(),
+                data.getItem(), data.getSlot(), session);
+
+        session.submitAsync(() -> consumer.accept(asyncData));
+    }
+
+    /**
+     * Runs the given action on the main thread with the contents the item
+     * has been clicked in, unless the inventory has been closed in the meantime.
+     *
+     * @param action the action, applying the results of the click to the contents
+     */
+    public void sync(Consumer<InventoryContents> action) {
+        Preconditions.checkNotNull(action, "The action cannot be null.");
+
+        if(!this.session.isOpen(this.generation))
+            return;
+
+        Bukkit.getScheduler().runTask(this.session.getSmartInventory().getManager().getPlugin(), () -> {
+            // Also dropped if the inventory has been closed then restored by the reopen cache
+            if(this.session.isOpen(this.generation))
+                action.accept(this.session.getContents());
+        });
+    }
+
+    /**
+     * Checks if the inventory the item has been clicked in has been closed,
+     * in which case the handler should stop its work.
+     * <br>
+     * The thread of the handler is also interrupted when the inventory is closed.
+     *
+     * @return <code>true</code> if the inventory has been closed
+     */
+    public boolean isCancelled() {
+        return !this.session.isOpen(this.generation);
+    }
+
+}
@@ -16,10 +16,16 @@
 
 package fr.minuskube.inv;
 
+import fr.minuskube.inv.content.VisibilityCache;
+import fr.minuskube.inv.util.ItemStackPool;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 
@@ -35,13 +41,16 @@ public class ClickableItem {
     private final ItemStack item;
     private final Consumer<?> consumer;
     private final boolean legacy;
+    private final boolean shared;
     private Predicate<Player> canSee = null, canClick = null;
     private ItemStack notVisibleFallBackItem = null;
+    private List<String> tags = Collections.emptyList();
 
-    private ClickableItem(ItemStack item, Consumer<?> consumer, boolean legacy) {
-        this.item = item;
+    private ClickableItem(ItemStack item, Consumer<?> consumer, boolean legacy, boolean shared) {
+        this.item = shared ? ItemStackPool.shared().intern(item) : item;
         this.consumer = consumer;
         this.legacy = legacy;
+        this.shared = shared;
     }
 
     /**
@@ -65,7 +74,7 @@ public class ClickableItem {
      */
     @Deprecated
     public static ClickableItem of(ItemStack item, Consumer<InventoryClickEvent> consumer) {
-        return new ClickableItem(item, consumer, true);
+        return new ClickableItem(item, consumer, true, false);
     }
 
     /**
@@ -76,7 +85,49 @@ public class ClickableItem {
      * @return the created ClickableItem
      */
     public static ClickableItem from(ItemStack item, Consumer<ItemClickData> consumer) {
-        return new ClickableItem(item, consumer, false);
+        return new ClickableItem(item, consumer, false, false);
+    }
+
+    /**
+     * Creates a ClickableItem whose item is interned in the {@link ItemStackPool},
+     * for the static items used by many inventories (fillers, borders, navigation buttons, ...).
+     * <br>
+     * The ClickableItem holds a copy of the item, which is shared with every identical
+     * interned item. Setting it again in a slot already displaying an identical
+     * interned item is then free, as the slot is known to be up-to-date.
+     *
+     * @param item the item, which can still be modified afterwards as it is copied
+     * @param consumer the consumer which will be called when the item is clicked
+     * @return the created ClickableItem
+     */
+    public static ClickableItem shared(ItemStack item, Consumer<ItemClickData> consumer) {
+        return new ClickableItem(item, consumer, false, true);
+    }
+
+    /**
+     * Same as {@link #shared(ItemStack, Consumer)}, with an empty consumer.
+     *
+     * @param item the item, which can still be modified afterwards as it is copied
+     * @return the created ClickableItem
+     */
+    public static ClickableItem shared(ItemStack item) {
+        return shared(item, data -> {});
+    }
+
+    /**
+     * Creates a ClickableItem whose consumer runs asynchronously, on a virtual thread
+     * owned by the {@link InventoryManager}, when the item is clicked.
+     * <br>
+     * The results of the click are applied back to the inventory with
+     * {@link AsyncClickData#sync(Consumer)}.
+     *
+     * @param item the item
+     * @param consumer the consumer which will be called asynchronously when the item is clicked
+     * @return the created ClickableItem
+     * @see AsyncClickData
+     */
+    public static ClickableItem async(ItemStack item, Consumer<AsyncClickData> consumer) {
+        return from(item, data -> AsyncClickData.submit(data, consumer));
     }
 
     /**
@@ -104,17 +155,19 @@ public class ClickableItem {
      * @return the created ClickableItem
      */
     public ClickableItem clone(ItemStack newItem) {
-        return new ClickableItem(newItem, this.consumer, this.legacy);
+        return cloneWithNewItem(newItem);
     }
 
     /**
-     * Clones this ClickableItem while keeping its {@link Consumer}, but giving it a new {@link ItemStack}.
+     * Clones this ClickableItem while keeping its {@link Consumer} and its tags, but giving it a new {@link ItemStack}.
      *
      * @param item the new {@link ItemStack}
      * @return a new ClickableItem with its related {@link ItemStack} updated
      */
     public ClickableItem cloneWithNewItem(ItemStack item) {
-        return new ClickableItem(item, consumer, legacy);
+        ClickableItem clone = new ClickableItem(item, consumer, legacy, shared);
+        clone.tags = this.tags;
+        return clone;
     }
 
     /**
@@ -123,23 +176,29 @@ public class ClickableItem {
      * @param data the data of the click
      */
     public void run(ItemClickData data) {
-        if ((canSee == null || canSee.test(data.getPlayer())) && (canClick == null || canClick.test(data.getPlayer()))) {
-            if(this.legacy) {
-                if(data.getEvent() instanceof InventoryClickEvent) {
-                    InventoryClickEvent event = (InventoryClickEvent) data.getEvent();
-
-                    this.run(event);
-                }
-            } else {
-                Consumer<ItemClickData> newConsumer = (Consumer<ItemClickData>) this.consumer;
-                newConsumer.accept(data);
+        if ((canSee == null || canSee.test(data.getPlayer())) && (canClick == null || canClick.test(data.getPlayer())))
+            accept(data);
+    }
+
+    private void accept(ItemClickData data) {
+        if(this.legacy) {
+            if(data.getEvent() instanceof InventoryClickEvent) {
+                Consumer<InventoryClickEvent> legacyConsumer = (Consumer<InventoryClickEvent>) this.consumer;
+                legacyConsumer.accept((InventoryClickEvent) data.getEvent());
             }
+        } else {
+            Consumer<ItemClickData> newConsumer = (Consumer<ItemClickData>) this.consumer;
+            newConsumer.accept(data);
         }
     }
 
     /**
      * Returns the item contained in this ClickableItem disregarding the visibility test set via {@link #canSee(Predicate, ItemStack)}.
      * <br>
+     * The item is shared with the inventories displaying it, and through the {@link ItemStackPool}
+     * with the identical items when this ClickableItem is {@link #isShared() shared},
+     * so it must not be modified: copy it with {@link ItemStack#clone()} first.
+     * <br>
      * <b>Warning:</b> The item can be <code>null</code>.
      *
      * @return the item, or <code>null</code> if there is no item
@@ -151,6 +210,8 @@ public class ClickableItem {
     /**
      * Returns the item contained in this ClickableItem or the fallback item, if the player is not allowed to see the item.
      * <br>
+     * Like {@link #getItem()}, the returned item is shared and must not be modified.
+     * <br>
      * <b>Warning:</b> The item can be <code>null</code>.
      *
      * @param player The player to test against if he can see this item
@@ -164,6 +225,44 @@ public class ClickableItem {
         }
     }
 
+    /**
+     * Same as {@link #getItem(Player)}, but reusing the visibility result
+     * memoized in the given cache.
+     * <br>
+     * Like {@link #getItem()}, the returned item is shared and must not be modified.
+     * <br>
+     * <b>Warning:</b> The item can be <code>null</code>.
+     *
+     * @param cache the cache of the contents the item is rendered in
+     * @return the item, the fallback item when not visible to the player, or <code>null</code> if there is no item
+     */
+    public ItemStack getItem(VisibilityCache cache) {
+        return cache.test(canSee) ? this.item : this.notVisibleFallBackItem;
+    }
+
+    /**
+     * Checks if the items of this ClickableItem are interned in the {@link ItemStackPool},
+     * as created by {@link #shared(ItemStack, Consumer)}.
+     * <br>
+     * A shared item is never modified, so displaying the same instance
+     * again means the displayed item is unchanged.
+     *
+     * @return <code>true</code> if the items are interned
+     */
+    public boolean isShared() {
+        return this.shared;
+    }
+
+    /**
+     * Checks if a visibility test has been set via {@link #canSee(Predicate, ItemStack)},
+     * meaning the rendered item depends on the player.
+     *
+     * @return <code>true</code> if this item has a visibility test
+     */
+    public boolean hasVisibilityTest() {
+        return this.canSee != null;
+    }
+
     /**
      * Sets a test to check if a player is allowed to see this item.
      * <br>
@@ -207,7 +306,7 @@ public class ClickableItem {
      */
     public ClickableItem canSee(Predicate<Player> canSee, ItemStack fallBackItem) {
         this.canSee = canSee;
-        this.notVisibleFallBackItem = fallBackItem;
+        this.notVisibleFallBackItem = this.shared ? ItemStackPool.shared().intern(fallBackItem) : fallBackItem;
         return this;
     }
 
@@ -224,4 +323,37 @@ public class ClickableItem {
         this.canClick = canClick;
         return this;
     }
+
+    /**
+     * Adds tags to this item, so the slots showing it can be updated without updating
+     * their whole inventory, with {@link InventoryManager#updateTagged(Player, String, java.util.function.BiFunction)}.
+     * <br>
+     * The item must be tagged before being set in an inventory.
+     * <br>
+     * Example:
+     * <ul>
+     *     <li><code>ClickableItem.empty(balanceItem).tag("balance")</code></li>
+     * </ul>
+     *
+     * @param tags the tags to add
+     *
+     * @return <code>this</code> for a builder-like usage
+     */
+    public ClickableItem tag(String... tags) {
+        List<String> merged = new ArrayList<>(this.tags);
+        merged.addAll(Arrays.asList(tags));
+
+        this.tags = Collections.unmodifiableList(merged);
+        return this;
+    }
+
+    /**
+     * Gets the tags of this item.
+     *
+     * @return an unmodifiable list of the tags, empty if the item has none
+     * @see #tag(String...)
+     */
+    public List<String> getTags() {
+        return tags;
+    }
 }
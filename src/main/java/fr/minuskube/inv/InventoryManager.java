@@ -16,45 +16,119 @@
 
 package fr.minuskube.inv;
 
+import com.google.common.base.Preconditions;
 import fr.minuskube.inv.content.InventoryContents;
 import fr.minuskube.inv.content.InventoryProvider;
+import fr.minuskube.inv.content.PropertyKey;
 import fr.minuskube.inv.content.SlotPos;
+import fr.minuskube.inv.jfr.MenuClickEvent;
+import fr.minuskube.inv.jfr.MenuUpdateEvent;
 import fr.minuskube.inv.opener.ChestInventoryOpener;
 import fr.minuskube.inv.opener.InventoryOpener;
 import fr.minuskube.inv.opener.SpecialInventoryOpener;
+import fr.minuskube.inv.util.Observable;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.*;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerKickEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.ServiceUnregisterEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
 
 public class InventoryManager {
 
-    private final JavaPlugin plugin;
+    private final Plugin plugin;
     private final PluginManager pluginManager;
 
-    private final Map<Player, SmartInventory> inventories;
-    private final Map<Player, InventoryContents> contents;
-    private final Map<Player, PlayerInvTask> updateTasks;
+    // Sessions by player id, so a player who left is never kept by its key
+    private final Map<UUID, SmartInventory> inventories;
+    private final Map<UUID, InventoryContents> contents;
+    private final Map<UUID, PlayerInvTask> updateTasks;
+
+    // Contents of the sessions opened by this manager, by inventory
+    private final Map<SmartInventory, Set<InventoryContents>> viewers;
+
+    // Bulk operations on the viewers of inventories, applied together once per tick
+    private final Map<SmartInventory, BulkOperation> pendingBulk;
+    private boolean bulkScheduled;
+
+    // Inventories created by custom openers without the SmartInventoryHolder
+    private final Map<Inventory, SmartInventoryHolder> foreignHandles;
+    private boolean foreignHandlesListened;
+
+    private final InvListener listener;
+
+    private final ExecutorService asyncExecutor;
+
+    // Slots bound to observables, by observable
+    private final Map<Observable<?>, List<Binding<?>>> bindings;
+    private final Map<Observable<?>, Set<Player>> pendingChanges;
+    private final BiConsumer<Observable<?>, Player> sourceListener;
+    private boolean renderScheduled;
+
+    // Computations holding values for the inventories of this manager, released with their last viewer
+    private final Set<SharedComputation<?>> computations = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    // Amount of update tasks running at each phase (tick modulo the period), by period
+    private final Map<Integer, int[]> phaseLoads;
+
+    // Contents of the parents of the inventories opened with SmartInventory#openChild,
+    // suspended until going back to them, by player id
+    private final Map<UUID, Deque<InventoryContents>> navigation;
+    private int maxNavigationDepth = 8;
+
+    // Contents of the closed sessions kept for a quick reopen, least recently closed first
+    private final Map<ReopenKey, CachedContents> reopenCache;
+    private int reopenCacheBudget = 2048;
+    private int reopenCacheSlots;
+
+    // Sessions and tasks found orphaned by the last leak scan
+    private final Set<Object> leakSuspects;
+    private BukkitTask leakDetector;
+    private int reclaimedLeaks;
+
+    // Every 30 seconds
+    private static final long LEAK_SCAN_PERIOD = 20 * 30;
 
     private final List<InventoryOpener> defaultOpeners;
     private final List<InventoryOpener> openers;
 
+    // Kept for the plugins compiled against the versions taking a JavaPlugin
     public InventoryManager(JavaPlugin plugin) {
+        this((Plugin) plugin);
+    }
+
+    public InventoryManager(Plugin plugin) {
         this.plugin = plugin;
         this.pluginManager = Bukkit.getPluginManager();
 
         this.inventories = new HashMap<>();
         this.contents = new HashMap<>();
         this.updateTasks = new HashMap<>();
+        this.viewers = new IdentityHashMap<>();
+        this.pendingBulk = new IdentityHashMap<>();
+        this.foreignHandles = new IdentityHashMap<>();
 
         this.defaultOpeners = Arrays.asList(
                 new ChestInventoryOpener(),
@@ -62,10 +136,49 @@ public class InventoryManager {
         );
 
         this.openers = new ArrayList<>();
+        this.listener = new InvListener();
+        this.asyncExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+        this.bindings = new IdentityHashMap<>();
+        this.pendingChanges = new IdentityHashMap<>();
+        this.sourceListener = this::sourceChanged;
+        this.phaseLoads = new HashMap<>();
+        this.navigation = new HashMap<>();
+        this.reopenCache = new LinkedHashMap<>();
+        this.leakSuspects = Collections.newSetFromMap(new IdentityHashMap<>());
     }
 
+    /**
+     * Registers the listeners of this manager.
+     * <br>
+     * The inventory events are received through the {@link SmartInvsDispatcher}
+     * shared by every plugin using SmartInvs, only the player and plugin
+     * lifecycle events are listened by each manager.
+     * <br>
+     * Also starts the leak detector, which reclaims the sessions and update tasks
+     * left behind by a player who isn't viewing their inventory anymore.
+     */
     public void init() {
-        pluginManager.registerEvents(new InvListener(), plugin);
+        pluginManager.registerEvents(this.listener, plugin);
+        SmartInvsDispatcher.join(plugin);
+
+        if (this.leakDetector == null)
+            this.leakDetector = Bukkit.getScheduler().runTaskTimer(plugin, this::detectLeaks, LEAK_SCAN_PERIOD, LEAK_SCAN_PERIOD);
+    }
+
+    /**
+     * Handles an inventory event routed to one of the sessions of this manager
+     * by the {@link SmartInvsDispatcher}.
+     */
+    void dispatch(Event event) {
+        if (event instanceof InventoryClickEvent)
+            this.listener.onInventoryClick((InventoryClickEvent) event);
+        else if (event instanceof InventoryDragEvent)
+            this.listener.onInventoryDrag((InventoryDragEvent) event);
+        else if (event instanceof InventoryOpenEvent)
+            this.listener.onInventoryOpen((InventoryOpenEvent) event);
+        else if (event instanceof InventoryCloseEvent)
+            this.listener.onInventoryClose((InventoryCloseEvent) event);
     }
 
 
@@ -88,72 +201,885 @@ public class InventoryManager {
     }
 
     public List<Player> getOpenedPlayers(SmartInventory inv) {
-        List<Player> list = new ArrayList<>();
+        Set<InventoryContents> invViewers = this.viewers.get(inv);
+        if (invViewers == null)
+            return new ArrayList<>();
 
-        this.inventories.forEach((player, playerInv) -> {
-            if (inv.equals(playerInv))
-                list.add(player);
-        });
+        List<Player> list = new ArrayList<>(invViewers.size());
+
+        for (InventoryContents viewer : invViewers)
+            list.add(viewer.holder().getPlayer());
 
         return list;
     }
 
+    /**
+     * Renders again the slots showing an item with the given tag, in the inventory
+     * viewed by the given player and in the parents it can go back to, without
+     * updating the rest of these inventories.
+     * <br>
+     * The renderer is given the player and the current item of each slot, and returns
+     * its new item. To keep the slot tagged, the new item must have the tag too, for example
+     * by creating it with {@link ClickableItem#cloneWithNewItem(org.bukkit.inventory.ItemStack)}.
+     *
+     * @param p        the player
+     * @param tag      the tag of the items
+     * @param renderer the function rendering the new item of a slot
+     * @see ClickableItem#tag(String...)
+     */
+    public void updateTagged(Player p, String tag, BiFunction<Player, ClickableItem, ClickableItem> renderer) {
+        InventoryContents playerContents = this.contents.get(p.getUniqueId());
+        if (playerContents != null)
+            updateTagged(playerContents, tag, renderer);
+
+        Deque<InventoryContents> stack = this.navigation.get(p.getUniqueId());
+        if (stack != null)
+            stack.forEach(suspended -> updateTagged(suspended, tag, renderer));
+    }
+
+    /**
+     * Same as {@link #updateTagged(Player, String, BiFunction)}, for every player
+     * viewing an inventory of this manager.
+     *
+     * @param tag      the tag of the items
+     * @param renderer the function rendering the new item of a slot
+     */
+    public void updateTaggedForAll(String tag, BiFunction<Player, ClickableItem, ClickableItem> renderer) {
+        // Rendering a slot can close or open an inventory
+        for (InventoryContents playerContents : this.contents.values().toArray(new InventoryContents[0]))
+            updateTagged(playerContents, tag, renderer);
+
+        for (Deque<InventoryContents> stack : new ArrayList<>(this.navigation.values()))
+            stack.forEach(suspended -> updateTagged(suspended, tag, renderer));
+    }
+
+    private void updateTagged(InventoryContents contents, String tag, BiFunction<Player, ClickableItem, ClickableItem> renderer) {
+        Player p = contents.holder().getPlayer();
+
+        for (int slot : contents.getTaggedSlots(tag))
+            contents.set(slot, renderer.apply(p, contents.get(slot).orElse(null)));
+    }
+
+    /**
+     * Updates the contents of every player viewing the given inventory
+     * with {@link InventoryProvider#update(Player, InventoryContents)}.
+     * <br>
+     * The update is applied on the main thread at the next tick, together with the
+     * other bulk operations requested meanwhile. This method can be called from any thread.
+     *
+     * @param inv the inventory
+     */
+    public void refreshAll(SmartInventory inv) {
+        queueBulk(inv, operation -> operation.refresh = true);
+    }
+
+    /**
+     * Closes the given inventory for every player viewing it.
+     * <br>
+     * The inventories are closed on the main thread at the next tick, and the other bulk
+     * operations requested for this inventory meanwhile are dropped. This method can be called from any thread.
+     *
+     * @param inv the inventory
+     */
+    public void closeAll(SmartInventory inv) {
+        queueBulk(inv, operation -> operation.close = true);
+    }
+
+    /**
+     * Sets the item of a slot for every player viewing the given inventory.
+     * <br>
+     * The item is set on the main thread at the next tick, together with the
+     * other bulk operations requested meanwhile, the last item set in a slot
+     * winning. This method can be called from any thread.
+     *
+     * @param inv    the inventory
+     * @param row    the row of the slot
+     * @param column the column of the slot
+     * @param item   the item to set, or <code>null</code> to clear the slot
+     * @throws IllegalArgumentException If the slot is out of the bounds of the inventory.
+     */
+    public void setForAll(SmartInventory inv, int row, int column, ClickableItem item) {
+        Preconditions.checkArgument(inv.checkBounds(row, column),
+                "The slot (%s, %s) is out of the bounds of the inventory %s.", row, column, inv.getId());
+
+        int slot = row * inv.getColumns() + column;
+        queueBulk(inv, operation -> operation.slots.put(slot, item));
+    }
+
+    public void setForAll(SmartInventory inv, SlotPos slotPos, ClickableItem item) {
+        setForAll(inv, slotPos.getRow(), slotPos.getColumn(), item);
+    }
+
+    private void queueBulk(SmartInventory inv, Consumer<BulkOperation> change) {
+        synchronized (this.pendingBulk) {
+            change.accept(this.pendingBulk.computeIfAbsent(inv, key -> new BulkOperation()));
+
+            if (this.bulkScheduled)
+                return;
+
+            this.bulkScheduled = true;
+        }
+
+        Bukkit.getScheduler().runTask(plugin, this::applyBulk);
+    }
+
+    private void applyBulk() {
+        Map<SmartInventory, BulkOperation> operations;
+
+        synchronized (this.pendingBulk) {
+            operations = new IdentityHashMap<>(this.pendingBulk);
+            this.pendingBulk.clear();
+            this.bulkScheduled = false;
+        }
+
+        operations.forEach((inv, operation) -> {
+            Set<InventoryContents> invViewers = this.viewers.get(inv);
+            if (invViewers == null)
+                return;
+
+            // Closing or updating a session can change the viewers
+            for (InventoryContents viewer : invViewers.toArray(new InventoryContents[0])) {
+                Player p = viewer.holder().getPlayer();
+
+                if (operation.close) {
+                    inv.close(p);
+                    continue;
+                }
+
+                operation.slots.forEach(viewer::set);
+
+                if (operation.refresh) {
+                    viewer.visibility().invalidate();
+                    inv.getProvider().update(p, viewer);
+                }
+            }
+        });
+    }
+
     public Optional<SmartInventory> getInventory(Player p) {
-        return Optional.ofNullable(this.inventories.get(p));
+        return Optional.ofNullable(this.inventories.get(p.getUniqueId()));
     }
 
     public boolean removeCachedForPlayer(final Player viewer) {
-        final boolean contents = this.contents.remove(viewer) != null;
-        final boolean inventory = this.inventories.remove(viewer) != null;
+        final boolean contents = this.getContents(viewer).isPresent();
+        final boolean inventory = this.inventories.containsKey(viewer.getUniqueId());
 
+        this.teardown(viewer.getUniqueId());
         return contents && inventory;
     }
 
     protected void setInventory(Player p, SmartInventory inv) {
         if (inv == null)
-            this.inventories.remove(p);
+            this.inventories.remove(p.getUniqueId());
         else
-            this.inventories.put(p, inv);
+            this.inventories.put(p.getUniqueId(), inv);
     }
 
     public Optional<InventoryContents> getContents(Player p) {
-        return Optional.ofNullable(this.contents.get(p));
+        return Optional.ofNullable(this.contents.get(p.getUniqueId()));
     }
 
     protected void setContents(Player p, InventoryContents contents) {
+        setContents(p.getUniqueId(), contents);
+    }
+
+    private void setContents(UUID id, InventoryContents contents) {
+        InventoryContents previous = contents == null
+                ? this.contents.remove(id)
+                : this.contents.put(id, contents);
+
+        if (previous != contents) {
+            if (previous != null)
+                removeViewer(previous);
+            if (contents != null)
+                this.viewers.computeIfAbsent(contents.inventory(),
+                        key -> Collections.newSetFromMap(new IdentityHashMap<>())).add(contents);
+        }
+
+        if (previous != null && previous != contents && !cacheContents(id, previous))
+            closeSession(previous.holder());
+
+        // The parents can't be gone back to once the inventory has been closed
         if (contents == null)
-            this.contents.remove(p);
+            discardNavigation(id);
+    }
+
+    private void removeViewer(InventoryContents contents) {
+        Set<InventoryContents> invViewers = this.viewers.get(contents.inventory());
+        if (invViewers == null)
+            return;
+
+        invViewers.remove(contents);
+
+        if (invViewers.isEmpty()) {
+            this.viewers.remove(contents.inventory());
+            releaseComputations(contents.inventory());
+        }
+    }
+
+    /**
+     * Registers a computation holding a value for an inventory of this manager,
+     * so the value is dropped once the last viewer of the inventory is gone.
+     */
+    void trackComputation(SharedComputation<?> computation) {
+        this.computations.add(computation);
+    }
+
+    private void releaseComputations(SmartInventory inv) {
+        if (this.computations.isEmpty())
+            return;
+
+        synchronized (this.computations) {
+            for (SharedComputation<?> computation : this.computations)
+                computation.invalidate(inv);
+        }
+    }
+
+    private void closeSession(SmartInventoryHolder session) {
+        session.close();
+        unbindAll(session);
+
+        if (!this.foreignHandles.isEmpty())
+            this.foreignHandles.remove(session.getInventory());
+    }
+
+    /**
+     * Keeps the contents of a session which has been closed in the reopen cache,
+     * if its inventory uses it ({@link SmartInventory.Builder#reopenCache(int)}).
+     * <br>
+     * The session is closed, but its bindings are kept so its contents are still
+     * up to date when they are restored.
+     *
+     * @return <code>true</code> if the contents have been cached
+     */
+    private boolean cacheContents(UUID id, InventoryContents closed) {
+        SmartInventoryHolder session = closed.holder();
+        SmartInventory inv = session.getSmartInventory();
+        Inventory handle = session.getInventory();
+
+        // Only the windows created with the holder of their session can be opened again
+        if (inv.getReopenCacheTtl() <= 0 || handle == null || handle.getHolder(false) != session)
+            return false;
+
+        int slots = inv.getRows() * inv.getColumns();
+        if (slots > this.reopenCacheBudget)
+            return false;
+
+        session.close();
+
+        // Removed first, so the contents move to the end of the least recently closed order
+        ReopenKey key = new ReopenKey(id, inv);
+        CachedContents replaced = this.reopenCache.remove(key);
+
+        if (replaced != null) {
+            this.reopenCacheSlots -= replaced.slots();
+            evictCached(replaced);
+        }
+
+        this.reopenCache.put(key, new CachedContents(closed, Bukkit.getCurrentTick() + inv.getReopenCacheTtl()));
+        this.reopenCacheSlots += slots;
+        trimReopenCache();
+        return true;
+    }
+
+    /**
+     * Takes the contents of the given inventory kept for the given player
+     * by the reopen cache, if they haven't expired and are at the given page.
+     *
+     * @return the contents, opened again, or <code>null</code> if there is none
+     */
+    protected InventoryContents takeCached(Player p, SmartInventory inv, int page) {
+        if (this.reopenCache.isEmpty())
+            return null;
+
+        CachedContents cached = this.reopenCache.remove(new ReopenKey(p.getUniqueId(), inv));
+        if (cached == null)
+            return null;
+
+        this.reopenCacheSlots -= cached.slots();
+
+        if (cached.expiresAt < Bukkit.getCurrentTick() || cached.contents.pagination().getPage() != page) {
+            evictCached(cached);
+            return null;
+        }
+
+        cached.contents.holder().reopen();
+        return cached.contents;
+    }
+
+    /**
+     * Drops the expired contents of the reopen cache, then the least
+     * recently closed ones until the cache fits in its budget.
+     */
+    private void trimReopenCache() {
+        int tick = Bukkit.getCurrentTick();
+
+        for (Iterator<CachedContents> it = this.reopenCache.values().iterator(); it.hasNext(); ) {
+            CachedContents cached = it.next();
+
+            if (cached.expiresAt < tick || this.reopenCacheSlots > this.reopenCacheBudget) {
+                it.remove();
+                this.reopenCacheSlots -= cached.slots();
+                evictCached(cached);
+            }
+        }
+    }
+
+    private void discardCached(UUID id) {
+        for (Iterator<Map.Entry<ReopenKey, CachedContents>> it = this.reopenCache.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<ReopenKey, CachedContents> entry = it.next();
+
+            if (entry.getKey().player.equals(id)) {
+                it.remove();
+                this.reopenCacheSlots -= entry.getValue().slots();
+                evictCached(entry.getValue());
+            }
+        }
+    }
+
+    private void evictCached(CachedContents cached) {
+        // Already closed when cached
+        unbindAll(cached.contents.holder());
+    }
+
+    /**
+     * Sets the maximum amount of slots of the contents kept by the reopen cache
+     * of this manager, shared by all its inventories. Defaults to 2048.
+     *
+     * @param slots the maximum amount of slots, 0 to disable the cache
+     * @throws IllegalArgumentException If slots is negative.
+     * @see SmartInventory.Builder#reopenCache(int)
+     */
+    public void setReopenCacheBudget(int slots) {
+        Preconditions.checkArgument(slots >= 0, "slots must be >= 0");
+        this.reopenCacheBudget = slots;
+        trimReopenCache();
+    }
+
+    /**
+     * Gets the amount of slots of the contents currently kept by the reopen cache of this manager.
+     *
+     * @return the amount of slots
+     */
+    public int getReopenCacheSize() {
+        return reopenCacheSlots;
+    }
+
+    /**
+     * Suspends the session of the given player, before opening
+     * a child inventory over it with {@link SmartInventory#openChild(Player, int)}.
+     * <br>
+     * The suspended contents are kept without their update task, until
+     * going back to them with {@link #back(Player)}.
+     */
+    protected void suspend(Player p) {
+        UUID id = p.getUniqueId();
+
+        InventoryContents current = this.contents.get(id);
+        if (current == null || !this.inventories.containsKey(id) || current.holder().getInventory() == null)
+            return;
+
+        cancelUpdateTask(id);
+        this.inventories.remove(id);
+        this.contents.remove(id);
+        removeViewer(current);
+
+        Deque<InventoryContents> stack = this.navigation.computeIfAbsent(id, key -> new ArrayDeque<>());
+        stack.push(current);
+
+        // The furthest parents are closed past the maximum depth
+        while (stack.size() > this.maxNavigationDepth)
+            closeSession(stack.removeLast().holder());
+    }
+
+    /**
+     * Goes back from the inventory viewed by the given player to its parent.
+     * <br>
+     * If the inventory has been opened with {@link SmartInventory#openChild(Player)},
+     * the suspended contents of its parent are restored in their own window: they are
+     * updated once by their provider instead of being initialized again, and only the
+     * slots which changed meanwhile are rendered.
+     * <br>
+     * Otherwise, the parent set with {@link SmartInventory.Builder#parent(SmartInventory)}
+     * is opened again, if there is one.
+     *
+     * @param p the player
+     * @return the inventory of the parent, or empty if there is no parent to go back to
+     */
+    @SuppressWarnings("unchecked")
+    public Optional<Inventory> back(Player p) {
+        UUID id = p.getUniqueId();
+
+        SmartInventory current = this.inventories.get(id);
+        Deque<InventoryContents> stack = this.navigation.get(id);
+
+        if (stack == null || stack.isEmpty()) {
+            if (current == null)
+                return Optional.empty();
+
+            return current.getParent().map(parent -> parent.open(p));
+        }
+
+        InventoryContents parentContents = stack.pop();
+        if (stack.isEmpty())
+            this.navigation.remove(id);
+
+        SmartInventoryHolder session = parentContents.holder();
+        SmartInventory parent = session.getSmartInventory();
+
+        if (current != null) {
+            current.getListeners().stream()
+                    .filter(listener -> listener.getType() == InventoryCloseEvent.class)
+                    .forEach(listener -> ((InventoryListener<InventoryCloseEvent>) listener)
+                            .accept(new InventoryCloseEvent(p.getOpenInventory())));
+
+            this.inventories.remove(id);
+        }
+
+        // Closes the session of the child, whose close event is then ignored
+        setContents(id, parentContents);
+
+        parentContents.visibility().invalidate();
+        parent.getProvider().update(p, parentContents);
+
+        setInventory(p, parent);
+        scheduleUpdateTask(p, parent);
+
+        p.openInventory(session.getInventory());
+        return Optional.of(session.getInventory());
+    }
+
+    private void discardNavigation(UUID id) {
+        Deque<InventoryContents> stack = this.navigation.remove(id);
+
+        if (stack != null)
+            stack.forEach(suspended -> closeSession(suspended.holder()));
+    }
+
+    /**
+     * Gets the amount of suspended parents the given player can go back to.
+     *
+     * @param p the player
+     * @return the depth of the navigation of the player
+     * @see #back(Player)
+     */
+    public int getNavigationDepth(Player p) {
+        Deque<InventoryContents> stack = this.navigation.get(p.getUniqueId());
+        return stack == null ? 0 : stack.size();
+    }
+
+    /**
+     * Sets the maximum amount of suspended parents kept for each player.
+     * When a child inventory is opened past this depth, the furthest parent is closed.
+     * Defaults to 8.
+     *
+     * @param depth the maximum depth
+     * @throws IllegalArgumentException If depth is smaller than 1.
+     */
+    public void setMaxNavigationDepth(int depth) {
+        Preconditions.checkArgument(depth > 0, "depth must be > 0");
+        this.maxNavigationDepth = depth;
+    }
+
+    /**
+     * Binds a slot of the given contents to the given observable: the slot is rendered
+     * again with the given renderer every time the observable changes.
+     * <br>
+     * Use {@link InventoryContents#bind(int, int, Observable, Function)} instead.
+     *
+     * @param contents the contents
+     * @param slot     the index of the slot
+     * @param source   the observable
+     * @param renderer the function rendering the item of the slot from the value of the observable
+     * @param <T>      the type of the value
+     */
+    public <T> void bind(InventoryContents contents, int slot, Observable<T> source, Function<T, ClickableItem> renderer) {
+        SmartInventoryHolder session = contents.holder();
+        unbind(contents, slot);
+
+        if (session.isClosed())
+            return;
+
+        Binding<T> binding = new Binding<>(session, slot, source, renderer);
+
+        if (session.bindings == null)
+            session.bindings = new ArrayList<>(2);
+        session.bindings.add(binding);
+
+        List<Binding<?>> sourceBindings = this.bindings.get(source);
+        if (sourceBindings == null) {
+            sourceBindings = new ArrayList<>();
+            this.bindings.put(source, sourceBindings);
+            source.subscribe(this.sourceListener);
+        }
+        sourceBindings.add(binding);
+    }
+
+    /**
+     * Removes the binding of a slot of the given contents, if it has one.
+     *
+     * @param contents the contents
+     * @param slot     the index of the slot
+     * @see #bind(InventoryContents, int, Observable, Function)
+     */
+    public void unbind(InventoryContents contents, int slot) {
+        SmartInventoryHolder session = contents.holder();
+        if (session.bindings == null)
+            return;
+
+        for (Iterator<Binding<?>> it = session.bindings.iterator(); it.hasNext(); ) {
+            Binding<?> binding = it.next();
+
+            if (binding.slot == slot) {
+                it.remove();
+                removeBinding(binding);
+            }
+        }
+    }
+
+    private void unbindAll(SmartInventoryHolder session) {
+        if (session.bindings == null)
+            return;
+
+        session.bindings.forEach(this::removeBinding);
+        session.bindings = null;
+    }
+
+    private void removeBinding(Binding<?> binding) {
+        List<Binding<?>> sourceBindings = this.bindings.get(binding.source);
+        if (sourceBindings == null)
+            return;
+
+        sourceBindings.remove(binding);
+
+        if (sourceBindings.isEmpty()) {
+            this.bindings.remove(binding.source);
+            binding.source.unsubscribe(this.sourceListener);
+        }
+    }
+
+    private void sourceChanged(Observable<?> source, Player target) {
+        synchronized (this.pendingChanges) {
+            // A null target means every player
+            this.pendingChanges.computeIfAbsent(source, key -> new HashSet<>()).add(target);
+
+            if (this.renderScheduled)
+                return;
+
+            this.renderScheduled = true;
+        }
+
+        // Changes of the same tick are rendered together
+        Bukkit.getScheduler().runTask(plugin, this::renderChanges);
+    }
+
+    private void renderChanges() {
+        Map<Observable<?>, Set<Player>> changes;
+
+        synchronized (this.pendingChanges) {
+            changes = new IdentityHashMap<>(this.pendingChanges);
+            this.pendingChanges.clear();
+            this.renderScheduled = false;
+        }
+
+        changes.forEach((source, targets) -> {
+            List<Binding<?>> sourceBindings = this.bindings.get(source);
+            if (sourceBindings == null)
+                return;
+
+            // Rendering a slot can bind it again
+            for (Binding<?> binding : sourceBindings.toArray(new Binding<?>[0])) {
+                if (targets.contains(null) || targets.contains(binding.session.getPlayer()))
+                    binding.render();
+            }
+        });
+    }
+
+    /**
+     * Gets the contents of the sessions opened by this manager, by inventory.
+     */
+    Map<SmartInventory, Set<InventoryContents>> getViewers() {
+        return Collections.unmodifiableMap(this.viewers);
+    }
+
+    int getUpdateTaskCount() {
+        return this.updateTasks.size();
+    }
+
+    /**
+     * Gets the amount of parents suspended by {@link SmartInventory#openChild(Player)}, for all the players.
+     */
+    int getSuspendedCount() {
+        int count = 0;
+
+        for (Deque<InventoryContents> stack : this.navigation.values())
+            count += stack.size();
+
+        return count;
+    }
+
+    /**
+     * Gets the executor running the async click handlers
+     * ({@link ClickableItem#async(org.bukkit.inventory.ItemStack, java.util.function.Consumer)})
+     * of the inventories of this manager, on virtual threads.
+     */
+    ExecutorService getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    Plugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Links the inventory created for the given session, so its events
+     * are routed to the session even if it has been created by an opener
+     * without using the {@link SmartInventoryHolder} of the session.
+     */
+    protected void setHandle(SmartInventoryHolder session, Inventory handle) {
+        session.setInventory(handle);
+
+        if (handle.getHolder(false) == session)
+            return;
+
+        // Not seen by the dispatcher, listened by this manager
+        this.foreignHandles.put(handle, session);
+
+        if (!this.foreignHandlesListened) {
+            pluginManager.registerEvents(new ForeignHandleListener(), plugin);
+            this.foreignHandlesListened = true;
+        }
+    }
+
+    /**
+     * Finds the session the given inventory has been opened for.
+     *
+     * @param inventory the top inventory of a view
+     * @return the session, or <code>null</code> if the inventory has not been opened
+     *         by this manager, or its session has been closed
+     */
+    private SmartInventoryHolder findSession(Inventory inventory) {
+        if (inventory == null)
+            return null;
+
+        final InventoryHolder holder = inventory.getHolder(false);
+        final SmartInventoryHolder session;
+
+        if (holder instanceof SmartInventoryHolder)
+            session = (SmartInventoryHolder) holder;
+        else if (this.foreignHandles.isEmpty())
+            return null;
         else
-            this.contents.put(p, contents);
+            session = this.foreignHandles.get(inventory);
+
+        if (session == null || session.getSmartInventory().getManager() != this)
+            return null;
+
+        return this.contents.get(session.getPlayer().getUniqueId()) == session.getContents() ? session : null;
+    }
+
+    /**
+     * Forgets the memoized visibility tests of the
+     * contents opened by the given player, for example after their
+     * permissions have been recalculated.
+     * <br>
+     * The items already displayed are not re-rendered until they are set again.
+     *
+     * @param p the player
+     */
+    public void invalidateVisibility(Player p) {
+        InventoryContents playerContents = this.contents.get(p.getUniqueId());
+
+        if (playerContents != null)
+            playerContents.visibility().invalidate();
     }
 
     protected void scheduleUpdateTask(Player p, SmartInventory inv) {
-        if (inv.getUpdateFrequency() > 0) {
-            PlayerInvTask task = new PlayerInvTask(p, inv.getProvider(), contents.get(p));
-            task.runTaskTimer(plugin, 1, inv.getUpdateFrequency());
-            this.updateTasks.put(p, task);
+        // Without an update frequency, invalidations are checked every tick
+        int period = inv.getUpdateFrequency() > 0 ? inv.getUpdateFrequency() : inv.isInvalidationMode() ? 1 : 0;
+
+        // The task of the previous inventory would keep running otherwise
+        cancelUpdateTask(p);
+
+        if (period > 0) {
+            PlayerInvTask task = new PlayerInvTask(p, inv, contents.get(p.getUniqueId()), period);
+
+            // Spreads the tasks of the same period over its ticks, instead of
+            // running all the tasks of the inventories opened in the same tick together
+            int phase = assignPhase(period);
+            int delay = 1 + Math.floorMod(phase - (Bukkit.getCurrentTick() + 1), period);
+
+            task.phase = phase;
+            task.runTaskTimer(plugin, delay, period);
+            this.updateTasks.put(p.getUniqueId(), task);
         }
     }
 
     protected void cancelUpdateTask(Player p) {
-        PlayerInvTask removed = this.updateTasks.remove(p);
+        cancelUpdateTask(p.getUniqueId());
+    }
+
+    private void cancelUpdateTask(UUID id) {
+        PlayerInvTask removed = this.updateTasks.remove(id);
         if (removed != null) {
             Bukkit.getScheduler().cancelTask(removed.getTaskId());
+            this.phaseLoads.get(removed.period)[removed.phase]--;
         }
     }
 
+    /**
+     * Forgets the session of the given player and stops its update task,
+     * without closing the inventory viewed by the player.
+     */
+    private void teardown(UUID id) {
+        cancelUpdateTask(id);
+
+        this.inventories.remove(id);
+        setContents(id, null);
+    }
+
+    /**
+     * Checks if the given session has been left by its player without
+     * being closed: the player is offline, or is viewing another inventory.
+     */
+    private boolean isOrphaned(SmartInventoryHolder session) {
+        Player p = session.getPlayer();
+        if (!p.isOnline())
+            return true;
+
+        // Still being opened
+        Inventory handle = session.getInventory();
+        if (handle == null)
+            return false;
+
+        return p.getOpenInventory().getTopInventory() != handle;
+    }
+
+    /**
+     * Reclaims the sessions and update tasks found orphaned by two consecutive scans,
+     * since a session can be briefly orphaned while its inventory is opened again.
+     */
+    private void detectLeaks() {
+        Set<Object> suspects = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        new HashMap<>(this.contents).forEach((id, playerContents) -> {
+            SmartInventoryHolder session = playerContents.holder();
+            if (!isOrphaned(session))
+                return;
+
+            if (!this.leakSuspects.contains(session)) {
+                suspects.add(session);
+                return;
+            }
+
+            Bukkit.getLogger().log(Level.WARNING, "Reclaimed the leaked session of the inventory "
+                    + session.getSmartInventory().getId() + " opened by " + session.getPlayer().getName());
+
+            this.reclaimedLeaks++;
+            teardown(id);
+        });
+
+        new HashMap<>(this.updateTasks).forEach((id, task) -> {
+            // The task of a session which has been replaced or removed
+            if (this.contents.get(id) == task.contents)
+                return;
+
+            if (!this.leakSuspects.contains(task)) {
+                suspects.add(task);
+                return;
+            }
+
+            Bukkit.getLogger().log(Level.WARNING, "Reclaimed the leaked update task of the inventory "
+                    + task.inventory.getId() + " opened by " + task.player.getName());
+
+            this.reclaimedLeaks++;
+            cancelUpdateTask(id);
+        });
+
+        trimReopenCache();
+
+        // Parents left behind by a child inventory which failed to open
+        new ArrayList<>(this.navigation.keySet()).forEach(id -> {
+            if (!this.contents.containsKey(id))
+                discardNavigation(id);
+        });
+
+        this.leakSuspects.clear();
+        this.leakSuspects.addAll(suspects);
+    }
+
+    /**
+     * Gets the amount of leaked sessions and update tasks reclaimed
+     * by the leak detector of this manager since it has been created.
+     *
+     * @return the amount of reclaimed leaks
+     */
+    public int getReclaimedLeaks() {
+        return reclaimedLeaks;
+    }
+
+    /**
+     * Finds the least loaded phase of the given period.
+     */
+    private int assignPhase(int period) {
+        int[] loads = this.phaseLoads.computeIfAbsent(period, int[]::new);
+        int phase = 0;
+
+        for (int i = 1; i < period; i++) {
+            if (loads[i] < loads[phase])
+                phase = i;
+        }
+
+        loads[phase]++;
+        return phase;
+    }
+
+    /**
+     * Gets the amount of update tasks of this manager which will run
+     * in each of the given amount of next ticks.
+     * <br>
+     * The tasks are spread over the ticks of their period, so this load
+     * should stay flat even if many inventories are opened in the same tick.
+     *
+     * @param ticks the amount of ticks
+     * @return the amount of tasks running in each tick, starting at the next tick
+     */
+    public int[] getUpdateLoad(int ticks) {
+        int[] histogram = new int[ticks];
+        int next = Bukkit.getCurrentTick() + 1;
+
+        this.phaseLoads.forEach((period, loads) -> {
+            for (int tick = 0; tick < ticks; tick++)
+                histogram[tick] += loads[(next + tick) % period];
+        });
+
+        return histogram;
+    }
+
     @SuppressWarnings("unchecked")
     class InvListener implements Listener {
 
-        @EventHandler(priority = EventPriority.LOW)
         public void onInventoryClick(InventoryClickEvent event) {
-            final Player player = (Player) event.getWhoClicked();
-            final SmartInventory inventory = inventories.get(player);
+            final SmartInventoryHolder session = findSession(event.getInventory());
 
-            if (inventory == null) {
+            if (session == null) {
                 return;
             }
 
+            final MenuClickEvent recorded = MenuClickEvent.start();
+
+            try {
+                click(session, event);
+            } finally {
+                if (recorded != null)
+                    recorded.commit(session.getSmartInventory().getId(), session.getPlayer().getUniqueId(), event.getRawSlot());
+            }
+        }
+
+        private void click(SmartInventoryHolder session, InventoryClickEvent event) {
+            final Player player = session.getPlayer();
+            final SmartInventory inventory = session.getSmartInventory();
+
             final InventoryAction inventoryAction = event.getAction();
             switch (inventoryAction) {
                 case NOTHING, COLLECT_TO_CURSOR -> {
@@ -163,27 +1089,28 @@ public class InventoryManager {
             }
 
             final ClickType clickType = event.getClick();
-            final InventoryContents invContents = contents.get(player);
+            final InventoryContents invContents = session.getContents();
             if (inventoryAction == InventoryAction.MOVE_TO_OTHER_INVENTORY) {
-                if (!invContents.property("allowShift", false)) {
+                if (!invContents.property(PropertyKey.ALLOW_SHIFT)) {
                     event.setCancelled(true);
                 }
             }
 
-            if (event.getClickedInventory() == player.getOpenInventory().getTopInventory()) {
+            if (event.getClickedInventory() == event.getInventory()) {
+                session.markActive();
+                inventory.getUpdateMetrics().recordClick();
+
                 if (clickType == ClickType.NUMBER_KEY) {
                     event.setCancelled(true);
                 }
 
-                final int row = event.getSlot() / 9;
-                final int column = event.getSlot() % 9;
-
-                if (!inventory.checkBounds(row, column)) {
+                // Contents are indexed like the top inventory, whatever its shape
+                final int index = event.getSlot();
+                if (index < 0 || index >= inventory.getRows() * inventory.getColumns()) {
                     return;
                 }
 
-                final SlotPos slot = SlotPos.of(row, column);
-                if (!invContents.isEditable(slot)) {
+                if (!invContents.isEditable(index)) {
                     event.setCancelled(true);
                 }
 
@@ -191,26 +1118,36 @@ public class InventoryManager {
                         .filter(listener -> listener.getType() == InventoryClickEvent.class)
                         .forEach(listener -> ((InventoryListener<InventoryClickEvent>) listener).accept(event));
 
-                invContents.get(slot).ifPresent(item -> item.run(new ItemClickData(event, player, event.getCurrentItem(), slot)));
+                final ClickableItem item = invContents.get(index).orElse(null);
+                final MenuFlow flow = session.getFlow();
+
+                if (item != null || flow != null) {
+                    final SlotPos slot = SlotPos.of(index / inventory.getColumns(), index % inventory.getColumns());
+                    final ItemClickData data = new ItemClickData(event, player, event.getCurrentItem(), slot, invContents);
+
+                    // The tests are run again, a click must not rely on a stale render
+                    if (item != null)
+                        item.run(data);
+                    if (flow != null)
+                        flow.offer(data);
+                }
 
                 // Don't update if the clicked slot is editable - prevent item glitching
-                if (!invContents.isEditable(slot)) {
+                if (!invContents.isEditable(index)) {
                     player.updateInventory();
                 }
             }
         }
 
-        @EventHandler(priority = EventPriority.LOW)
         public void onInventoryDrag(InventoryDragEvent e) {
-            Player p = (Player) e.getWhoClicked();
+            SmartInventoryHolder session = findSession(e.getInventory());
+            if (session == null) return;
 
-            SmartInventory inv = inventories.get(p);
-            if (inv == null) return;
-            InventoryContents content = contents.get(p);
+            SmartInventory inv = session.getSmartInventory();
+            InventoryContents content = session.getContents();
 
             for (int slot : e.getRawSlots()) {
-                SlotPos pos = SlotPos.of(slot / 9, slot % 9);
-                if (slot >= p.getOpenInventory().getTopInventory().getSize() || content.isEditable(pos))
+                if (slot >= e.getInventory().getSize() || content.isEditable(slot))
                     continue;
 
                 e.setCancelled(true);
@@ -222,24 +1159,23 @@ public class InventoryManager {
                     .forEach(listener -> ((InventoryListener<InventoryDragEvent>) listener).accept(e));
         }
 
-        @EventHandler(priority = EventPriority.LOW)
         public void onInventoryOpen(InventoryOpenEvent e) {
-            Player p = (Player) e.getPlayer();
+            SmartInventoryHolder session = findSession(e.getInventory());
+            if (session == null) return;
 
-            SmartInventory inv = inventories.get(p);
-            if (inv == null) return;
+            SmartInventory inv = session.getSmartInventory();
 
             inv.getListeners().stream()
                     .filter(listener -> listener.getType() == InventoryOpenEvent.class)
                     .forEach(listener -> ((InventoryListener<InventoryOpenEvent>) listener).accept(e));
         }
 
-        @EventHandler(priority = EventPriority.LOW)
         public void onInventoryClose(InventoryCloseEvent e) {
-            Player p = (Player) e.getPlayer();
+            SmartInventoryHolder session = findSession(e.getInventory());
+            if (session == null) return;
 
-            SmartInventory inv = inventories.get(p);
-            if (inv == null) return;
+            Player p = session.getPlayer();
+            SmartInventory inv = session.getSmartInventory();
 
             try {
                 inv.getListeners().stream()
@@ -248,35 +1184,90 @@ public class InventoryManager {
             } finally {
                 if (inv.isCloseable()) {
                     e.getInventory().clear();
-                    InventoryManager.this.cancelUpdateTask(p);
-
-                    inventories.remove(p);
-                    contents.remove(p);
+                    teardown(p.getUniqueId());
                 } else
-                    Bukkit.getScheduler().runTask(plugin, () -> p.openInventory(e.getInventory()));
+                    Bukkit.getScheduler().runTask(plugin, () -> {
+                        // The session may have been torn down since
+                        if (contents.get(p.getUniqueId()) == session.getContents())
+                            p.openInventory(e.getInventory());
+                    });
             }
         }
 
         @EventHandler(priority = EventPriority.LOW)
         public void onPlayerQuit(PlayerQuitEvent e) {
-            Player p = e.getPlayer();
+            UUID id = e.getPlayer().getUniqueId();
 
-            SmartInventory inv = inventories.get(p);
-            if (inv == null) return;
+            SmartInventory inv = inventories.get(id);
+            if (inv == null) {
+                // A task left behind by a session removed without cancelling it
+                cancelUpdateTask(id);
+                discardCached(id);
+                return;
+            }
 
             try {
                 inv.getListeners().stream()
                         .filter(listener -> listener.getType() == PlayerQuitEvent.class)
                         .forEach(listener -> ((InventoryListener<PlayerQuitEvent>) listener).accept(e));
             } finally {
-                inventories.remove(p);
-                contents.remove(p);
+                teardown(id);
+                discardCached(id);
             }
         }
 
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onPlayerKick(PlayerKickEvent e) {
+            // The session is forgotten by the quit event following the kick,
+            // which the inventory listeners still receive
+            cancelUpdateTask(e.getPlayer().getUniqueId());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerChangedWorld(PlayerChangedWorldEvent e) {
+            Player p = e.getPlayer();
+
+            InventoryContents playerContents = contents.get(p.getUniqueId());
+            if (playerContents == null)
+                return;
+
+            // Closed by the server without a close event
+            Inventory handle = playerContents.holder().getInventory();
+            if (handle != null && p.getOpenInventory().getTopInventory() != handle)
+                teardown(p.getUniqueId());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onOtherInventoryOpen(InventoryOpenEvent e) {
+            UUID id = e.getPlayer().getUniqueId();
+
+            InventoryContents playerContents = contents.get(id);
+            if (playerContents == null)
+                return;
+
+            SmartInventoryHolder session = playerContents.holder();
+            Inventory handle = session.getInventory();
+
+            // Still being opened, or opened again
+            if (handle == null || e.getInventory() == handle || e.getInventory().getHolder(false) == session)
+                return;
+
+            // Opened again over the other inventory by the close listener
+            if (!session.getSmartInventory().isCloseable())
+                return;
+
+            // Replaced by an inventory opened without closing the session
+            teardown(id);
+        }
+
         @EventHandler(priority = EventPriority.LOW)
         public void onPluginDisable(PluginDisableEvent e) {
-            new HashMap<>(inventories).forEach((player, inv) -> {
+            if (e.getPlugin() != plugin)
+                return;
+
+            new HashMap<>(inventories).forEach((id, inv) -> {
+                Player player = contents.get(id).holder().getPlayer();
+
                 try {
                     inv.getListeners().stream()
                             .filter(listener -> listener.getType() == PluginDisableEvent.class)
@@ -286,8 +1277,141 @@ public class InventoryManager {
                 }
             });
 
+            contents.values().forEach(playerContents -> {
+                playerContents.holder().close();
+                unbindAll(playerContents.holder());
+            });
+
+            new ArrayList<>(updateTasks.keySet()).forEach(InventoryManager.this::cancelUpdateTask);
+            new ArrayList<>(navigation.keySet()).forEach(InventoryManager.this::discardNavigation);
+            reopenCache.values().forEach(InventoryManager.this::evictCached);
+            reopenCache.clear();
+            reopenCacheSlots = 0;
+
+            if (leakDetector != null) {
+                leakDetector.cancel();
+                leakDetector = null;
+            }
+
             inventories.clear();
             contents.clear();
+            viewers.clear();
+            foreignHandles.clear();
+            leakSuspects.clear();
+
+            asyncExecutor.shutdownNow();
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onServiceUnregister(ServiceUnregisterEvent e) {
+            // The plugin which registered the dispatcher has been disabled
+            if (!SmartInvsDispatcher.isDispatcher(e.getProvider().getProvider()))
+                return;
+
+            if (plugin.isEnabled())
+                SmartInvsDispatcher.join(plugin);
+        }
+
+    }
+
+    /**
+     * Listens the events of the inventories created by custom
+     * openers without the {@link SmartInventoryHolder} of their session.
+     */
+    class ForeignHandleListener implements Listener {
+
+        @EventHandler(priority = EventPriority.LOW)
+        public void onInventoryClick(InventoryClickEvent e) {
+            if (foreignHandles.containsKey(e.getInventory()))
+                listener.onInventoryClick(e);
+        }
+
+        @EventHandler(priority = EventPriority.LOW)
+        public void onInventoryDrag(InventoryDragEvent e) {
+            if (foreignHandles.containsKey(e.getInventory()))
+                listener.onInventoryDrag(e);
+        }
+
+        @EventHandler(priority = EventPriority.LOW)
+        public void onInventoryOpen(InventoryOpenEvent e) {
+            if (foreignHandles.containsKey(e.getInventory()))
+                listener.onInventoryOpen(e);
+        }
+
+        @EventHandler(priority = EventPriority.LOW)
+        public void onInventoryClose(InventoryCloseEvent e) {
+            if (foreignHandles.containsKey(e.getInventory()))
+                listener.onInventoryClose(e);
+        }
+
+    }
+
+    private static final class BulkOperation {
+
+        private final Map<Integer, ClickableItem> slots = new LinkedHashMap<>();
+        private boolean refresh;
+        private boolean close;
+
+    }
+
+    private static final class ReopenKey {
+
+        private final UUID player;
+        private final SmartInventory inventory;
+
+        private ReopenKey(UUID player, SmartInventory inventory) {
+            this.player = player;
+            this.inventory = inventory;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ReopenKey)) return false;
+
+            ReopenKey other = (ReopenKey) o;
+            return player.equals(other.player) && inventory == other.inventory;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * player.hashCode() + System.identityHashCode(inventory);
+        }
+
+    }
+
+    private static final class CachedContents {
+
+        private final InventoryContents contents;
+        private final int expiresAt;
+
+        private CachedContents(InventoryContents contents, int expiresAt) {
+            this.contents = contents;
+            this.expiresAt = expiresAt;
+        }
+
+        private int slots() {
+            return contents.inventory().getRows() * contents.inventory().getColumns();
+        }
+
+    }
+
+    static final class Binding<T> {
+
+        private final SmartInventoryHolder session;
+        private final int slot;
+        private final Observable<T> source;
+        private final Function<T, ClickableItem> renderer;
+
+        private Binding(SmartInventoryHolder session, int slot, Observable<T> source, Function<T, ClickableItem> renderer) {
+            this.session = session;
+            this.slot = slot;
+            this.source = source;
+            this.renderer = renderer;
+        }
+
+        private void render() {
+            this.session.getContents().set(this.slot, this.renderer.apply(this.source.get()));
         }
 
     }
@@ -295,18 +1419,79 @@ public class InventoryManager {
     static class PlayerInvTask extends BukkitRunnable {
 
         private final Player player;
+        private final SmartInventory inventory;
         private final InventoryProvider provider;
         private final InventoryContents contents;
+        private final int period;
+        private final UpdateMetrics metrics;
+        private int phase;
 
-        public PlayerInvTask(Player player, InventoryProvider provider, InventoryContents contents) {
+        private int staleTicks;
+
+        // Adaptive update frequency, in cycles of the task
+        private final int maxBackoff;
+        private int backoff = 1, skipped;
+
+        public PlayerInvTask(Player player, SmartInventory inventory, InventoryContents contents, int period) {
             this.player = Objects.requireNonNull(player);
-            this.provider = Objects.requireNonNull(provider);
+            this.inventory = Objects.requireNonNull(inventory);
+            this.provider = Objects.requireNonNull(inventory.getProvider());
             this.contents = Objects.requireNonNull(contents);
+            this.period = period;
+            this.metrics = inventory.getUpdateMetrics();
+            this.maxBackoff = Math.max(1, inventory.getMaxUpdateFrequency() / period);
         }
 
         @Override
         public void run() {
+            final SmartInventoryHolder session = this.contents.holder();
+            boolean invalidated = false;
+
+            if (inventory.isInvalidationMode()) {
+                this.staleTicks += this.period;
+
+                boolean stale = inventory.getMaxStaleness() > 0 && this.staleTicks >= inventory.getMaxStaleness();
+                invalidated = session.consumeInvalidation();
+
+                if (!invalidated && !stale) {
+                    this.metrics.record(false, false);
+                    return;
+                }
+
+                this.staleTicks = 0;
+            }
+
+            if (this.maxBackoff > 1) {
+                // A click or an invalidation resets the backoff
+                boolean active = session.consumeActivity();
+
+                if (invalidated || active)
+                    this.backoff = 1;
+                else if (++this.skipped < this.backoff) {
+                    this.metrics.record(false, false);
+                    return;
+                }
+
+                this.skipped = 0;
+            }
+
+            final long changes = this.contents.getChangeCount();
+
+            final long start = System.nanoTime();
+            final MenuUpdateEvent recorded = MenuUpdateEvent.start();
+
+            this.contents.visibility().invalidate();
             provider.update(this.player, this.contents);
+
+            this.metrics.recordUpdateTime(System.nanoTime() - start);
+
+            final boolean changed = this.contents.getChangeCount() != changes;
+            if (recorded != null)
+                recorded.commit(inventory.getId(), player.getUniqueId(), changed);
+            this.metrics.record(true, changed);
+
+            if (this.maxBackoff > 1)
+                this.backoff = changed ? 1 : Math.min(this.backoff * 2, this.maxBackoff);
         }
 
     }
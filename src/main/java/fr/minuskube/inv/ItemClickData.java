@@ -16,23 +16,32 @@
 
 package fr.minuskube.inv;
 
+import fr.minuskube.inv.content.InventoryContents;
 import fr.minuskube.inv.content.SlotPos;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Event;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.Optional;
+
 public class ItemClickData {
 
     private final Event event;
     private final Player player;
     private final ItemStack item;
     private final SlotPos slot;
+    private final InventoryContents contents;
 
     public ItemClickData(Event event, Player player, ItemStack item, SlotPos slot) {
+        this(event, player, item, slot, null);
+    }
+
+    public ItemClickData(Event event, Player player, ItemStack item, SlotPos slot, InventoryContents contents) {
         this.event = event;
         this.player = player;
         this.item = item;
         this.slot = slot;
+        this.contents = contents;
     }
 
     public Event getEvent() { return event; }
@@ -40,4 +49,11 @@ public class ItemClickData {
     public ItemStack getItem() { return item; }
     public SlotPos getSlot() { return slot; }
 
+    /**
+     * Gets the contents the item has been clicked in.
+     *
+     * @return the contents, if the click comes from a SmartInvs inventory
+     */
+    public Optional<InventoryContents> getContents() { return Optional.ofNullable(contents); }
+
 }
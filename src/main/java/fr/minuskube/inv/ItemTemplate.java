@@ -0,0 +1,339 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import com.google.common.base.Preconditions;
+import fr.minuskube.inv.util.ItemStackPool;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.TextDecoration;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * An item whose name and lore depend on the player viewing it.
+ * </p>
+ *
+ * <p>
+ * The name and lore are <a href="https://docs.advntr.dev/minimessage/format.html">MiniMessage</a>
+ * strings which can contain placeholders written as <code>{name}</code>, and a literal
+ * <code>{</code> written as <code>{{</code>. They are compiled once when the template is built,
+ * and every placeholder they use must be declared with {@link Builder#placeholder(String, Function)}
+ * or {@link Builder#componentPlaceholder(String, Function)}.
+ * </p>
+ *
+ * <p>
+ * The values of the placeholders declared with {@link Builder#placeholder(String, Function)} are
+ * inserted as plain text ({@link Placeholder#unparsed(String, String)}): they take the formatting of
+ * the template around them, and the tags they may contain are displayed as typed, so a value coming
+ * from a player cannot change the formatting of the item. A value which carries its own formatting
+ * is declared with {@link Builder#componentPlaceholder(String, Function)} instead, and inserted
+ * as a component ({@link Placeholder#component(String, net.kyori.adventure.text.ComponentLike)}).
+ * </p>
+ *
+ * <p>
+ * When rendering the template for a player, only the declared placeholders are resolved.
+ * The last item rendered for each player is kept with its resolved values, so rendering
+ * the template again while nothing changed for that player returns the same {@link ItemStack}
+ * instance instead of building a new one. Rendered items are interned in the
+ * {@link ItemStackPool}, so the players seeing identical values share a single instance.
+ * </p>
+ *
+ * <p>
+ * Example:
+ * <pre>{@code
+ * ItemTemplate balance = ItemTemplate.builder(new ItemStack(Material.GOLD_INGOT))
+ *         .name("<gold>Balance: {balance}")
+ *         .lore("<gray>Rank: {rank}")
+ *         .placeholder("balance", player -> String.valueOf(economy.getBalance(player)))
+ *         .placeholder("rank", player -> ranks.getRank(player))
+ *         .build();
+ *
+ * contents.set(0, 4, balance.from(player, data -> openShop(data.getPlayer())));
+ * }</pre>
+ * </p>
+ */
+@SuppressWarnings("unchecked")
+public class ItemTemplate {
+
+    private static final MiniMessage MINI_MESSAGE = MiniMessage.miniMessage();
+
+    private final ItemStack base;
+    private final String name;
+    private final String[] lore;
+
+    private final String[] placeholders;
+    private final Function<Player, ?>[] resolvers;
+
+    private final Map<Player, Rendered> lastRendered = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private ItemTemplate(Builder builder) {
+        this.base = builder.base.clone();
+        this.placeholders = builder.placeholders.toArray(new String[0]);
+        this.resolvers = builder.resolvers.toArray(new Function[0]);
+
+        this.name = builder.name == null ? null : compile(builder.name);
+        this.lore = new String[builder.lore.size()];
+        for(int i = 0; i < this.lore.length; i++)
+            this.lore[i] = compile(builder.lore.get(i));
+    }
+
+    /**
+     * Renders this template for the given player.
+     * <br>
+     * If the resolved placeholder values are the same as the previous render
+     * for this player, the previously rendered {@link ItemStack} is returned.
+     * <br>
+     * <b>Warning:</b> The returned item is shared and must not be modified.
+     *
+     * @param player the player to resolve the placeholders for
+     * @return the rendered item
+     */
+    public ItemStack render(Player player) {
+        Object[] values = new Object[this.resolvers.length];
+        for(int i = 0; i < values.length; i++) {
+            Object value = this.resolvers[i].apply(player);
+            values[i] = value instanceof Component ? value : String.valueOf(value);
+        }
+
+        List<Object> key = Arrays.asList(values);
+        Rendered last = this.lastRendered.get(player);
+
+        if(last != null && last.values.equals(key))
+            return last.item;
+
+        ItemStack item = ItemStackPool.shared().intern(build(values));
+        this.lastRendered.put(player, new Rendered(key, item));
+        return item;
+    }
+
+    /**
+     * Renders this template for the given player and wraps it into
+     * a {@link ClickableItem} with the given ItemClickData's consumer.
+     *
+     * @param player   the player to resolve the placeholders for
+     * @param consumer the consumer which will be called when the item is clicked
+     * @return the created ClickableItem
+     * @see ClickableItem#shared(ItemStack, Consumer)
+     */
+    public ClickableItem from(Player player, Consumer<ItemClickData> consumer) {
+        return ClickableItem.shared(render(player), consumer);
+    }
+
+    /**
+     * Renders this template for the given player and wraps it into
+     * a {@link ClickableItem} doing nothing when clicked.
+     *
+     * @param player the player to resolve the placeholders for
+     * @return the created ClickableItem
+     * @see ClickableItem#shared(ItemStack)
+     */
+    public ClickableItem empty(Player player) {
+        return ClickableItem.shared(render(player));
+    }
+
+    /**
+     * Forgets the items rendered for every player,
+     * the next renders will build the items again.
+     */
+    public void invalidate() {
+        this.lastRendered.clear();
+    }
+
+    /**
+     * Forgets the item rendered for the given player,
+     * the next render for this player will build the item again.
+     *
+     * @param player the player
+     */
+    public void invalidate(Player player) {
+        this.lastRendered.remove(player);
+    }
+
+    private ItemStack build(Object[] values) {
+        TagResolver[] placeholders = new TagResolver[values.length];
+        for(int i = 0; i < values.length; i++) {
+            placeholders[i] = values[i] instanceof Component
+                    ? Placeholder.component(tag(i), (Component) values[i])
+                    : Placeholder.unparsed(tag(i), (String) values[i]);
+        }
+
+        TagResolver resolver = TagResolver.resolver(placeholders);
+        ItemStack item = this.base.clone();
+
+        item.editMeta(meta -> {
+            if(this.name != null)
+                meta.displayName(render(this.name, resolver));
+
+            if(this.lore.length > 0) {
+                List<Component> lines = new ArrayList<>(this.lore.length);
+                for(String line : this.lore)
+                    lines.add(render(line, resolver));
+
+                meta.lore(lines);
+            }
+        });
+
+        return item;
+    }
+
+    private static Component render(String line, TagResolver resolver) {
+        return MINI_MESSAGE.deserialize(line, resolver)
+                .decorationIfAbsent(TextDecoration.ITALIC, TextDecoration.State.FALSE);
+    }
+
+    /**
+     * Compiles a line of the template to a MiniMessage string,
+     * replacing each placeholder by the tag resolving its value.
+     */
+    private String compile(String template) {
+        StringBuilder compiled = new StringBuilder(template.length());
+
+        int i = 0;
+        while(i < template.length()) {
+            char c = template.charAt(i);
+
+            if(c != '{') {
+                compiled.append(c);
+                i++;
+                continue;
+            }
+
+            // An escaped {
+            if(i + 1 < template.length() && template.charAt(i + 1) == '{') {
+                compiled.append('{');
+                i += 2;
+                continue;
+            }
+
+            int close = template.indexOf('}', i);
+            if(close == -1) {
+                compiled.append(template, i, template.length());
+                break;
+            }
+
+            String placeholder = template.substring(i + 1, close);
+            int index = Arrays.asList(this.placeholders).indexOf(placeholder);
+            Preconditions.checkArgument(index != -1,
+                    "The placeholder {%s} used in \"%s\" has not been declared.", placeholder, template);
+
+            compiled.append('<').append(tag(index)).append('>');
+            i = close + 1;
+        }
+
+        return compiled.toString();
+    }
+
+    private static String tag(int index) {
+        return "sinv_placeholder_" + index;
+    }
+
+    public ItemStack getBase() { return base.clone(); }
+
+    public static Builder builder(ItemStack base) { return new Builder(base); }
+
+    private static final class Rendered {
+
+        private final List<Object> values;
+        private final ItemStack item;
+
+        private Rendered(List<Object> values, ItemStack item) {
+            this.values = values;
+            this.item = item;
+        }
+
+    }
+
+    public static final class Builder {
+
+        private final ItemStack base;
+        private String name;
+        private final List<String> lore = new ArrayList<>();
+
+        private final List<String> placeholders = new ArrayList<>();
+        private final List<Function<Player, ?>> resolvers = new ArrayList<>();
+
+        private Builder(ItemStack base) {
+            this.base = Preconditions.checkNotNull(base, "The base item of the template cannot be null.");
+        }
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder lore(String... lines) {
+            this.lore.addAll(Arrays.asList(lines));
+            return this;
+        }
+
+        /**
+         * Declares a placeholder which can be used in the name and lore
+         * of the template as <code>{name}</code>.
+         * <br>
+         * Its value is inserted as plain text, formatted as the template around it.
+         *
+         * @param name     the name of the placeholder
+         * @param resolver the function resolving the value of the placeholder for a player
+         * @return <code>this</code>, for chained calls
+         */
+        public Builder placeholder(String name, Function<Player, String> resolver) {
+            return declare(name, resolver);
+        }
+
+        /**
+         * Declares a placeholder which can be used in the name and lore
+         * of the template as <code>{name}</code>.
+         * <br>
+         * Its value is inserted as a component, keeping its own formatting.
+         *
+         * @param name     the name of the placeholder
+         * @param resolver the function resolving the value of the placeholder for a player
+         * @return <code>this</code>, for chained calls
+         */
+        public Builder componentPlaceholder(String name, Function<Player, ? extends Component> resolver) {
+            return declare(name, resolver);
+        }
+
+        private Builder declare(String name, Function<Player, ?> resolver) {
+            Preconditions.checkArgument(!this.placeholders.contains(name),
+                    "The placeholder {%s} has already been declared.", name);
+
+            this.placeholders.add(name);
+            this.resolvers.add(Preconditions.checkNotNull(resolver));
+            return this;
+        }
+
+        public ItemTemplate build() {
+            return new ItemTemplate(this);
+        }
+
+    }
+
+}
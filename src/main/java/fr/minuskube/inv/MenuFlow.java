@@ -0,0 +1,264 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import com.google.common.base.Preconditions;
+import fr.minuskube.inv.content.InventoryContents;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * <p>
+ * A multi-step menu (confirm dialog, quantity picker, wizard, ...) written
+ * as a sequential script instead of nested click callbacks.
+ * </p>
+ *
+ * <p>
+ * The script runs on a virtual thread, and blocks on {@link #awaitClick()}
+ * until the player clicks in the inventory. The contents are modified with
+ * {@link #render(Consumer)}, which runs on the main thread, and every step
+ * reuses the contents of the opened inventory instead of opening it again.
+ * <br>
+ * A waiting flow only costs a parked virtual thread.
+ * </p>
+ *
+ * <p>
+ * The clicks are given to the script as snapshots: the {@link ItemClickData} has no event
+ * (the Bukkit event is only valid on the main thread, while it is dispatched) and its item is a copy.
+ * At most {@value #MAX_PENDING_CLICKS} clicks wait for the script, the oldest ones are dropped
+ * when the player clicks faster than the script handles them.
+ * </p>
+ *
+ * <p>
+ * When the player closes the inventory (or opens another one), the flow is cancelled:
+ * {@link #awaitClick()} and {@link #render(Consumer)} throw a {@link CancellationException},
+ * which ends the script silently.
+ * </p>
+ *
+ * <p>
+ * Example:
+ * <pre>{@code
+ * MenuFlow.start(quantityMenu, player, flow -> {
+ *     int quantity = 1;
+ *
+ *     while(true) {
+ *         int current = quantity;
+ *         flow.render(contents -> contents.set(1, 4, ClickableItem.empty(quantityIcon(current))));
+ *
+ *         SlotPos slot = flow.awaitClick().getSlot();
+ *         if(slot.getColumn() == 3) quantity = Math.max(1, quantity - 1);
+ *         else if(slot.getColumn() == 5) quantity++;
+ *         else if(slot.getColumn() == 8) break;
+ *     }
+ *
+ *     shop.purchase(player.getUniqueId(), product, quantity);  // blocking
+ *     flow.close();
+ * });
+ * }</pre>
+ * </p>
+ */
+public class MenuFlow {
+
+    /**
+     * The maximum amount of clicks waiting for the script.
+     */
+    public static final int MAX_PENDING_CLICKS = 16;
+
+    private static final Object CLOSED = new Object();
+
+    private final SmartInventoryHolder session;
+    private final int generation;
+    private final BlockingQueue<Object> clicks = new ArrayBlockingQueue<>(MAX_PENDING_CLICKS);
+    private final CountDownLatch closeLatch = new CountDownLatch(1);
+
+    private MenuFlow(SmartInventoryHolder session) {
+        this.session = session;
+        this.generation = session.getGeneration();
+    }
+
+    /**
+     * Opens the given inventory to the player, and starts the given
+     * script on a virtual thread owned by the {@link InventoryManager}.
+     * <br>
+     * This must be called on the main thread.
+     *
+     * @param inventory the inventory of the flow, initialized by its provider
+     * @param player    the player
+     * @param script    the script of the flow
+     * @return the started flow
+     */
+    public static MenuFlow start(SmartInventory inventory, Player player, Consumer<MenuFlow> script) {
+        Preconditions.checkNotNull(script, "The script of the flow cannot be null.");
+
+        inventory.open(player);
+
+        InventoryContents contents = inventory.getManager().getContents(player)
+                .orElseThrow(() -> new IllegalStateException("The inventory of the flow has not been opened."));
+
+        MenuFlow flow = new MenuFlow(contents.holder());
+        contents.holder().setFlow(flow);
+
+        inventory.getManager().getAsyncExecutor().execute(() -> flow.run(script));
+        return flow;
+    }
+
+    private void run(Consumer<MenuFlow> script) {
+        try {
+            script.accept(this);
+        } catch(CancellationException ignored) {
+            // The inventory has been closed
+        } catch(Throwable t) {
+            Bukkit.getLogger().log(Level.SEVERE, "The menu flow of the inventory "
+                    + this.session.getSmartInventory().getId() + " threw an exception", t);
+        }
+    }
+
+    /**
+     * Waits until the player clicks in the inventory of this flow.
+     *
+     * @return a snapshot of the click, without its event
+     * @throws CancellationException If the inventory is closed, or the thread is interrupted
+     */
+    public ItemClickData awaitClick() {
+        try {
+            Object click = this.clicks.take();
+
+            if(click == CLOSED) {
+                // Kept for the next calls
+                this.clicks.offer(CLOSED);
+                throw new CancellationException("The inventory of the flow has been closed.");
+            }
+
+            return (ItemClickData) click;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The flow has been interrupted.");
+        }
+    }
+
+    /**
+     * Waits until the inventory of this flow is closed.
+     *
+     * @throws CancellationException If the thread is interrupted
+     */
+    public void awaitClose() {
+        try {
+            this.closeLatch.await();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The flow has been interrupted.");
+        }
+    }
+
+    /**
+     * Applies the given action to the contents of the inventory on the main thread,
+     * and waits until it has been applied.
+     *
+     * @param action the action, modifying the contents
+     * @throws CancellationException If the inventory is closed, or the thread is interrupted
+     */
+    public void render(Consumer<InventoryContents> action) {
+        if(Bukkit.isPrimaryThread()) {
+            checkOpen();
+            action.accept(this.session.getContents());
+            return;
+        }
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Bukkit.getScheduler().runTask(this.session.getSmartInventory().getManager().getPlugin(), () -> {
+            try {
+                checkOpen();
+                action.accept(this.session.getContents());
+                done.complete(null);
+            } catch(Throwable t) {
+                done.completeExceptionally(t);
+            }
+        });
+
+        try {
+            done.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The flow has been interrupted.");
+        } catch(ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+
+            throw new IllegalStateException("Could not render the flow.", e.getCause());
+        }
+    }
+
+    /**
+     * Closes the inventory of this flow, on the main thread.
+     */
+    public void close() {
+        if(isClosed())
+            return;
+
+        Bukkit.getScheduler().runTask(this.session.getSmartInventory().getManager().getPlugin(), () -> {
+            if(!isClosed())
+                this.session.getSmartInventory().close(this.session.getPlayer());
+        });
+    }
+
+    private void checkOpen() {
+        // A session restored by the reopen cache is a new generation, without this flow
+        if(isClosed())
+            throw new CancellationException("The inventory of the flow has been closed.");
+    }
+
+    /**
+     * Gives a snapshot of the given click to the script,
+     * dropping the oldest pending click if there are too many.
+     * <br>
+     * This is only called on the main thread.
+     */
+    void offer(ItemClickData click) {
+        ItemStack item = click.getItem() == null ? null : click.getItem().clone();
+        ItemClickData snapshot = new ItemClickData(null, click.getPlayer(), item, click.getSlot(),
+                click.getContents().orElse(null));
+
+        push(snapshot);
+    }
+
+    void closed() {
+        push(CLOSED);
+        this.closeLatch.countDown();
+    }
+
+    private void push(Object element) {
+        // The script only takes elements, so there is room after dropping the oldest one
+        while(!this.clicks.offer(element))
+            this.clicks.poll();
+    }
+
+    public boolean isClosed() { return !session.isOpen(generation); }
+    public Player getPlayer() { return session.getPlayer(); }
+    public SmartInventory getInventory() { return session.getSmartInventory(); }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import com.google.common.base.Preconditions;
+import fr.minuskube.inv.content.InventoryContents;
+import org.bukkit.Bukkit;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * <p>
+ * A value computed once for all the viewers of an inventory, instead of
+ * once per viewer in {@link fr.minuskube.inv.content.InventoryProvider#update(org.bukkit.entity.Player, InventoryContents)}.
+ * </p>
+ *
+ * <p>
+ * The values are kept by inventory instance, whatever its id: the first viewer updated computes the value,
+ * and the other viewers updated in the next ticks reuse it until it is older than its
+ * maximum age. By default, the maximum age is the update frequency of the inventory,
+ * since the updates of its viewers are spread over the ticks of its update period.
+ * <br>
+ * The value of an inventory is dropped when its last viewer closes it.
+ * </p>
+ *
+ * <p>
+ * With {@link Builder#staleWhileRevalidate(int)}, an expired value is still returned
+ * for a while, and computed again on the async executor of the inventory manager
+ * instead of blocking the update of the viewer.
+ * The supplier must then be safe to call from another thread.
+ * </p>
+ *
+ * <p>
+ * Example:
+ * <pre>{@code
+ * SharedComputation<List<Entry>> top = SharedComputation.builder(() -> leaderboard.sortedEntries())
+ *         .maxAge(20)
+ *         .staleWhileRevalidate(100)
+ *         .build();
+ *
+ * public void update(Player player, InventoryContents contents) {
+ *     List<Entry> entries = top.get(contents);
+ *     ...
+ * }
+ * }</pre>
+ * </p>
+ *
+ * @param <T> the type of the computed value
+ */
+public class SharedComputation<T> {
+
+    private final Supplier<T> supplier;
+    private final int maxAge;
+    private final int staleTicks;
+    private final Executor executor;
+
+    // SmartInventory doesn't override equals, the ids of unrelated inventories may be the same
+    private final Map<SmartInventory, Entry<T>> entries = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private SharedComputation(Builder<T> builder) {
+        this.supplier = builder.supplier;
+        this.maxAge = builder.maxAge;
+        this.staleTicks = builder.staleTicks;
+        this.executor = builder.executor;
+    }
+
+    /**
+     * Gets the value shared by the viewers of the inventory of the given contents,
+     * computing it if it has expired.
+     *
+     * @param contents the contents being updated
+     * @return the shared value
+     */
+    public T get(InventoryContents contents) {
+        return get(contents.inventory());
+    }
+
+    /**
+     * Gets the value shared by the viewers of the given inventory,
+     * computing it if it has expired.
+     *
+     * @param inv the inventory
+     * @return the shared value
+     */
+    public T get(SmartInventory inv) {
+        int tick = Bukkit.getCurrentTick();
+        int maxAge = this.maxAge > 0 ? this.maxAge : Math.max(1, inv.getUpdateFrequency());
+
+        Entry<T> entry = this.entries.get(inv);
+
+        if(entry == null) {
+            // Released by the manager with the last viewer of the inventory, registered
+            // outside of computeIfAbsent as the manager removes entries while locking its registry
+            inv.getManager().trackComputation(this);
+            entry = this.entries.computeIfAbsent(inv, key -> new Entry<>());
+        }
+
+        synchronized(entry) {
+            if(entry.computed) {
+                int age = tick - entry.computedAt;
+
+                if(age < maxAge)
+                    return entry.value;
+
+                if(age < maxAge + this.staleTicks) {
+                    refresh(inv, entry);
+                    return entry.value;
+                }
+            }
+
+            entry.value = this.supplier.get();
+            entry.computedAt = tick;
+            entry.computed = true;
+
+            return entry.value;
+        }
+    }
+
+    private void refresh(SmartInventory inv, Entry<T> entry) {
+        if(entry.refreshing)
+            return;
+
+        entry.refreshing = true;
+
+        Executor executor = this.executor != null ? this.executor : inv.getManager().getAsyncExecutor();
+
+        try {
+            executor.execute(() -> refreshAsync(inv, entry));
+        } catch(RejectedExecutionException e) {
+            // Shut down with the plugin, computed by the next viewer once too stale
+            entry.refreshing = false;
+        }
+    }
+
+    private void refreshAsync(SmartInventory inv, Entry<T> entry) {
+        try {
+            T value = this.supplier.get();
+
+            synchronized(entry) {
+                entry.value = value;
+                entry.computedAt = Bukkit.getCurrentTick();
+            }
+        } catch(Throwable t) {
+            Bukkit.getLogger().log(Level.SEVERE, "The shared computation of the inventory "
+                    + inv.getId() + " threw an exception", t);
+        } finally {
+            synchronized(entry) {
+                entry.refreshing = false;
+            }
+        }
+    }
+
+    /**
+     * Forgets the value of the given inventory, so it is computed again by its next viewer.
+     *
+     * @param inv the inventory
+     */
+    public void invalidate(SmartInventory inv) {
+        this.entries.remove(inv);
+    }
+
+    /**
+     * Forgets the values of every inventory.
+     */
+    public void invalidateAll() {
+        this.entries.clear();
+    }
+
+    public static <T> SharedComputation<T> of(Supplier<T> supplier) { return builder(supplier).build(); }
+    public static <T> Builder<T> builder(Supplier<T> supplier) { return new Builder<>(supplier); }
+
+    private static final class Entry<T> {
+
+        private T value;
+        private int computedAt;
+        private boolean computed;
+        private boolean refreshing;
+
+    }
+
+    public static final class Builder<T> {
+
+        private final Supplier<T> supplier;
+        private int maxAge = 0;
+        private int staleTicks = 0;
+        private Executor executor;
+
+        private Builder(Supplier<T> supplier) {
+            this.supplier = Preconditions.checkNotNull(supplier, "The supplier of the computation cannot be null.");
+        }
+
+        /**
+         * Sets the amount of ticks a computed value is reused.
+         * Defaults to 0, meaning the update frequency of the inventory (or a single tick without it).
+         *
+         * @param ticks the maximum age of a value, in ticks
+         * @return <code>this</code>, for chained calls
+         * @throws IllegalArgumentException If ticks is negative.
+         */
+        public Builder<T> maxAge(int ticks) {
+            Preconditions.checkArgument(ticks >= 0, "ticks must be >= 0");
+            this.maxAge = ticks;
+            return this;
+        }
+
+        /**
+         * Sets the amount of ticks an expired value is still returned while it is
+         * computed again asynchronously. Past this delay, the value is computed
+         * by the viewer being updated. Defaults to 0, meaning expired values are never returned.
+         *
+         * @param ticks the maximum staleness of a value, in ticks
+         * @return <code>this</code>, for chained calls
+         * @throws IllegalArgumentException If ticks is negative.
+         */
+        public Builder<T> staleWhileRevalidate(int ticks) {
+            Preconditions.checkArgument(ticks >= 0, "ticks must be >= 0");
+            this.staleTicks = ticks;
+            return this;
+        }
+
+        /**
+         * Sets the executor computing the expired values again.
+         * Defaults to the async executor of the manager of the inventory, running on virtual threads.
+         *
+         * @param executor the executor
+         * @return <code>this</code>, for chained calls
+         */
+        public Builder<T> executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public SharedComputation<T> build() {
+            return new SharedComputation<>(this);
+        }
+
+    }
+
+}
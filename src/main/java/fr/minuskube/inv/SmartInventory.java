@@ -18,7 +18,9 @@ package fr.minuskube.inv;
 
 import fr.minuskube.inv.content.InventoryContents;
 import fr.minuskube.inv.content.InventoryProvider;
+import fr.minuskube.inv.content.MenuTemplate;
 import fr.minuskube.inv.content.SlotPos;
+import fr.minuskube.inv.jfr.MenuOpenEvent;
 import fr.minuskube.inv.opener.InventoryOpener;
 
 import java.util.ArrayList;
@@ -26,6 +28,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import com.google.common.base.Preconditions;
 
@@ -44,12 +47,18 @@ public class SmartInventory {
     private int rows, columns;
     private boolean closeable;
     private int updateFrequency;
+    private boolean invalidationMode;
+    private int maxStaleness;
+    private int maxUpdateFrequency;
+    private int reopenCacheTtl;
 
     private InventoryProvider provider;
     private SmartInventory parent;
+    private MenuTemplate template;
 
     private List<InventoryListener<? extends Event>> listeners;
     private final InventoryManager manager;
+    private UpdateMetrics updateMetrics;
 
     private SmartInventory(InventoryManager manager) {
         this.manager = manager;
@@ -68,6 +77,16 @@ public class SmartInventory {
     }	
 
     public Inventory open(Player player, int page, Map<String, Object> properties) {	
+        MenuOpenEvent event = MenuOpenEvent.start();
+        Inventory handle = openSession(player, page, properties);
+
+        if (event != null)
+            event.commit(this.id, player.getUniqueId());
+
+        return handle;
+    }
+
+    private Inventory openSession(Player player, int page, Map<String, Object> properties) {
         Optional<SmartInventory> oldInv = this.manager.getInventory(player);
 
         oldInv.ifPresent(inv -> {
@@ -79,6 +98,14 @@ public class SmartInventory {
             this.manager.setInventory(player, null);
         });
 
+        // The properties may change what the provider initializes
+        if (properties.isEmpty()) {
+            InventoryContents cached = this.manager.takeCached(player, this, page);
+
+            if (cached != null)
+                return reopen(player, cached);
+        }
+
         InventoryContents contents = new InventoryContents.Impl(this, player);
         contents.pagination().page(page);
         properties.forEach(contents::setProperty);
@@ -90,22 +117,64 @@ public class SmartInventory {
                 .orElseThrow(() -> new IllegalStateException("No opener found for the inventory type " + type.name()));
         Inventory handle = opener.open(this, player);
 
+        this.manager.setHandle(contents.holder(), handle);
         this.manager.setInventory(player, this);
         this.manager.scheduleUpdateTask(player, this);
         
         return handle;
     }
 
+    /**
+     * Opens again the contents kept by the reopen cache in their own window,
+     * with a single update instead of initializing them.
+     */
+    private Inventory reopen(Player player, InventoryContents contents) {
+        this.manager.setContents(player, contents);
+
+        // Only the close listener clears the inventory, the other paths (another inventory opened, ...) leave it as is
+        Inventory handle = contents.holder().getInventory();
+        handle.clear();
+        this.manager.findOpener(type).ifPresent(opener -> opener.fill(handle, contents, player));
+
+        contents.visibility().invalidate();
+        this.provider.update(player, contents);
+
+        player.openInventory(handle);
+        this.manager.setInventory(player, this);
+        this.manager.scheduleUpdateTask(player, this);
+
+        return handle;
+    }
+
+    /**
+     * Opens this inventory over the one currently viewed by the player.
+     * <br>
+     * The current inventory is not closed but suspended, until the player goes
+     * back to it with {@link InventoryManager#back(Player)}.
+     *
+     * @param player the player
+     * @return the opened inventory
+     */
+    public Inventory openChild(Player player) {
+        return openChild(player, 0);
+    }
+
+    public Inventory openChild(Player player, int page) {
+        this.manager.suspend(player);
+        return open(player, page, Collections.EMPTY_MAP);
+    }
+
     public void close(Player player) {
         listeners.stream()
                 .filter(listener -> listener.getType() == InventoryCloseEvent.class)
                 .forEach(listener -> ((InventoryListener<InventoryCloseEvent>) listener)
                         .accept(new InventoryCloseEvent(player.getOpenInventory())));
 
+        // Forgotten first, so the close event of the inventory is ignored
         this.manager.setInventory(player, null);
-        player.closeInventory();
-
         this.manager.setContents(player, null);
+
+        player.closeInventory();
         this.manager.cancelUpdateTask(player);
     }
     /**
@@ -129,9 +198,32 @@ public class SmartInventory {
     public void setCloseable(boolean closeable) { this.closeable = closeable; }
     
     public int getUpdateFrequency() { return updateFrequency; }
+    public boolean isInvalidationMode() { return invalidationMode; }
+    public int getMaxStaleness() { return maxStaleness; }
+    public int getMaxUpdateFrequency() { return maxUpdateFrequency; }
+    public int getReopenCacheTtl() { return reopenCacheTtl; }
+
+    /**
+     * Gets the update and click statistics of the sessions of this inventory,
+     * which live as long as this inventory.
+     *
+     * @return the statistics
+     */
+    public UpdateMetrics getUpdateMetrics() { return updateMetrics; }
+
+    /**
+     * Requests a redraw of this inventory for every player viewing it.
+     *
+     * @see InventoryContents#invalidate()
+     */
+    public void invalidateAll() {
+        for(Player player : this.manager.getOpenedPlayers(this))
+            this.manager.getContents(player).ifPresent(InventoryContents::invalidate);
+    }
 
     public InventoryProvider getProvider() { return provider; }
     public Optional<SmartInventory> getParent() { return Optional.ofNullable(parent); }
+    public Optional<MenuTemplate> getTemplate() { return Optional.ofNullable(template); }
 
     public InventoryManager getManager() { return manager; }
 
@@ -148,10 +240,15 @@ public class SmartInventory {
         private Optional<Integer> columns = Optional.empty();
         private boolean closeable = true;
         private int updateFrequency = 0;
+        private boolean invalidationMode = false;
+        private int maxStaleness = 0;
+        private int maxUpdateFrequency = 0;
+        private int reopenCacheTtl = 0;
 
         private InventoryManager manager;
         private InventoryProvider provider;
         private SmartInventory parent;
+        private Consumer<InventoryContents> template;
 
         private List<InventoryListener<? extends Event>> listeners = new ArrayList<>();
 
@@ -195,6 +292,74 @@ public class SmartInventory {
         	return this;
         }
 
+        /**
+         * Enables the invalidation mode: instead of being called at every update of the inventory,
+         * the {@link InventoryProvider#update(Player, InventoryContents)} method is only called
+         * when a redraw has been requested with {@link InventoryContents#invalidate()} or
+         * {@link SmartInventory#invalidateAll()}. Defaults to <code>false</code>.
+         * <br>
+         * The invalidations are checked at the update frequency of the inventory, or every tick if it isn't set.
+         *
+         * @param invalidationMode <code>true</code> to only update the inventory when invalidated
+         * @see #maxStaleness(int)
+         */
+        public Builder invalidationMode(boolean invalidationMode) {
+            this.invalidationMode = invalidationMode;
+            return this;
+        }
+
+        /**
+         * Sets the maximum amount of ticks an inventory in invalidation mode can go
+         * without being updated, even if it hasn't been invalidated. Defaults to 0, meaning no maximum.
+         *
+         * @param ticks the maximum staleness, in ticks
+         * @throws IllegalArgumentException If ticks is negative.
+         * @see #invalidationMode(boolean)
+         */
+        public Builder maxStaleness(int ticks) {
+            Preconditions.checkArgument(ticks >= 0, "ticks must be >= 0");
+            this.maxStaleness = ticks;
+            return this;
+        }
+
+        /**
+         * Enables the adaptive update frequency: every time a call to the
+         * {@link InventoryProvider#update(Player, InventoryContents)} method doesn't change
+         * any slot, the update frequency of the player's inventory is doubled, up to the given
+         * maximum. It goes back to the frequency set with {@link #updateFrequency(int)} as soon
+         * as an update changes a slot or the player clicks in the inventory.
+         * Defaults to 0, meaning the update frequency never changes.
+         *
+         * @param maxFrequency the maximum update frequency, in ticks
+         * @throws IllegalArgumentException If maxFrequency is negative.
+         */
+        public Builder adaptiveUpdateFrequency(int maxFrequency) {
+            Preconditions.checkArgument(maxFrequency >= 0, "maxFrequency must be >= 0");
+            this.maxUpdateFrequency = maxFrequency;
+            return this;
+        }
+
+        /**
+         * Keeps the contents of the inventory for the given amount of ticks after it
+         * has been closed: if the player opens it again at the same page meanwhile,
+         * the contents are restored and updated once with
+         * {@link InventoryProvider#update(Player, InventoryContents)}, instead of calling
+         * {@link InventoryProvider#init(Player, InventoryContents)} again.
+         * Defaults to 0, meaning the contents are never kept.
+         * <br>
+         * The kept contents of every inventory of a manager share the budget set with
+         * {@link InventoryManager#setReopenCacheBudget(int)}, the least recently closed
+         * being dropped first.
+         *
+         * @param ttl the time the contents are kept, in ticks
+         * @throws IllegalArgumentException If ttl is negative.
+         */
+        public Builder reopenCache(int ttl) {
+            Preconditions.checkArgument(ttl >= 0, "ttl must be >= 0");
+            this.reopenCacheTtl = ttl;
+            return this;
+        }
+
         public Builder provider(InventoryProvider provider) {
             this.provider = provider;
             return this;
@@ -205,6 +370,25 @@ public class SmartInventory {
             return this;
         }
 
+        /**
+         * Sets the static layout of the inventory (borders, decoration, navigation buttons, ...).
+         * <br>
+         * The layout is applied once when the inventory is built, and every opening of the
+         * inventory starts with a copy of its result, before calling
+         * {@link InventoryProvider#init(Player, InventoryContents)}.
+         * <br>
+         * The layout is not linked to any player, the items depending on the player
+         * must use {@link ClickableItem#canSee(java.util.function.Predicate, org.bukkit.inventory.ItemStack)}
+         * or be set by the provider.
+         *
+         * @param layout the static layout
+         * @see MenuTemplate
+         */
+        public Builder template(Consumer<InventoryContents> layout) {
+            this.template = layout;
+            return this;
+        }
+
         public Builder listener(InventoryListener<? extends Event> listener) {
             this.listeners.add(listener);
             return this;
@@ -243,6 +427,22 @@ public class SmartInventory {
             return updateFrequency;
         }
 
+        public boolean isInvalidationMode() {
+            return invalidationMode;
+        }
+
+        public int getMaxStaleness() {
+            return maxStaleness;
+        }
+
+        public int getMaxUpdateFrequency() {
+            return maxUpdateFrequency;
+        }
+
+        public int getReopenCacheTtl() {
+            return reopenCacheTtl;
+        }
+
         public InventoryManager getManager() {
             return manager;
         }
@@ -255,6 +455,10 @@ public class SmartInventory {
             return parent;
         }
 
+        public Consumer<InventoryContents> getTemplate() {
+            return template;
+        }
+
         public List<InventoryListener<? extends Event>> getListeners() {
             return Collections.unmodifiableList(listeners);
         }
@@ -278,9 +482,18 @@ public class SmartInventory {
             inv.columns = this.columns.orElseGet(() -> getDefaultDimensions(type).getColumn());
             inv.closeable = this.closeable;
             inv.updateFrequency = this.updateFrequency;
+            inv.invalidationMode = this.invalidationMode;
+            inv.maxStaleness = this.maxStaleness;
+            inv.maxUpdateFrequency = this.maxUpdateFrequency;
+            inv.reopenCacheTtl = this.reopenCacheTtl;
             inv.provider = this.provider;
             inv.parent = this.parent;
             inv.listeners = this.listeners;
+            inv.updateMetrics = new UpdateMetrics(this.id);
+
+            if(this.template != null)
+                inv.template = MenuTemplate.render(inv, this.template);
+
             return inv;
         }
 
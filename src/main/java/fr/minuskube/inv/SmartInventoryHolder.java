@@ -0,0 +1,258 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * <p>
+ * The holder of the inventories opened by SmartInvs, carrying
+ * the session (player, {@link SmartInventory} and {@link InventoryContents})
+ * the inventory has been opened for.
+ * </p>
+ *
+ * <p>
+ * The {@link fr.minuskube.inv.opener.InventoryOpener}s create their inventories
+ * with the holder of the contents ({@link InventoryContents#holder()}), so the events
+ * of an inventory are routed to its session with a single <code>instanceof</code>
+ * check on its holder, and the events of the other inventories are ignored immediately.
+ * </p>
+ *
+ * <p>
+ * The holder accepts the events of its inventory from the {@link SmartInvsDispatcher},
+ * and hands them to the {@link InventoryManager} of its session.
+ * </p>
+ */
+public class SmartInventoryHolder implements InventoryHolder, Consumer<Event> {
+
+    private final SmartInventory inventory;
+    private final Player player;
+    private final InventoryContents contents;
+
+    private Inventory handle;
+    private volatile boolean closed;
+    private volatile int generation;
+    private volatile boolean invalidated;
+    private boolean active;
+    private MenuFlow flow;
+
+    // Slots bound to observables, managed by the InventoryManager
+    List<InventoryManager.Binding<?>> bindings;
+
+    // Async tasks of the session, run one after the other
+    private final Queue<Runnable> asyncTasks = new ArrayDeque<>();
+    private Thread asyncThread;
+    private boolean asyncRunning;
+
+    public SmartInventoryHolder(SmartInventory inventory, Player player, InventoryContents contents) {
+        this.inventory = inventory;
+        this.player = player;
+        this.contents = contents;
+    }
+
+    /**
+     * Gets the inventory created for this session, or <code>null</code>
+     * if the inventory has not been opened yet.
+     *
+     * @return the inventory handle
+     */
+    @Override
+    public Inventory getInventory() {
+        return handle;
+    }
+
+    void setInventory(Inventory handle) {
+        this.handle = handle;
+    }
+
+    @Override
+    public void accept(Event event) {
+        this.inventory.getManager().dispatch(event);
+    }
+
+    /**
+     * Runs the given task on the async executor of the manager, after
+     * the async tasks of this session submitted before it.
+     * <br>
+     * The task is dropped if the session is closed before it runs.
+     */
+    void submitAsync(Runnable task) {
+        synchronized(this.asyncTasks) {
+            if(this.closed)
+                return;
+
+            this.asyncTasks.add(task);
+
+            if(!this.asyncRunning) {
+                this.asyncRunning = true;
+                this.inventory.getManager().getAsyncExecutor().execute(this::runAsyncTasks);
+            }
+        }
+    }
+
+    private void runAsyncTasks() {
+        while(true) {
+            Runnable task;
+
+            synchronized(this.asyncTasks) {
+                task = this.asyncTasks.poll();
+
+                if(task == null || this.closed) {
+                    this.asyncTasks.clear();
+                    this.asyncRunning = false;
+                    this.asyncThread = null;
+                    return;
+                }
+
+                this.asyncThread = Thread.currentThread();
+            }
+
+            try {
+                task.run();
+            } catch(Throwable t) {
+                if(!this.closed)
+                    Bukkit.getLogger().log(Level.SEVERE, "An async task of the inventory "
+                            + this.inventory.getId() + " threw an exception", t);
+            } finally {
+                // Clears the interrupt of a cancelled task, so it doesn't leak to the next one
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Closes this session: the pending async tasks are dropped,
+     * and the running one is interrupted.
+     */
+    void close() {
+        synchronized(this.asyncTasks) {
+            if(this.closed)
+                return;
+
+            this.closed = true;
+            this.asyncTasks.clear();
+
+            if(this.asyncThread != null)
+                this.asyncThread.interrupt();
+        }
+
+        if(this.flow != null)
+            this.flow.closed();
+    }
+
+    /**
+     * Opens this session again, after its contents have been kept
+     * closed by the reopen cache of the manager.
+     * <br>
+     * This starts a new generation of the session, so the callbacks
+     * scheduled before it has been closed are still dropped.
+     */
+    void reopen() {
+        synchronized(this.asyncTasks) {
+            this.closed = false;
+            this.generation++;
+        }
+
+        this.flow = null;
+    }
+
+    /**
+     * Requests a redraw of this session by the next update of its inventory.
+     *
+     * @see InventoryContents#invalidate()
+     */
+    public void invalidate() {
+        this.invalidated = true;
+    }
+
+    /**
+     * Checks if a redraw has been requested since the last call, and clears the request.
+     */
+    boolean consumeInvalidation() {
+        if(!this.invalidated)
+            return false;
+
+        this.invalidated = false;
+        return true;
+    }
+
+    /**
+     * Marks this session as used by its player, which resets
+     * its adaptive update frequency.
+     */
+    void markActive() {
+        this.active = true;
+    }
+
+    boolean consumeActivity() {
+        if(!this.active)
+            return false;
+
+        this.active = false;
+        return true;
+    }
+
+    /**
+     * Checks if this session has been closed, either because its inventory
+     * has been closed or because another inventory has been opened.
+     *
+     * @return <code>true</code> if the session is closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Gets the generation of this session, incremented each time
+     * it is opened again from the reopen cache of the manager.
+     *
+     * @return the generation
+     */
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Checks if this session is open and has not been closed since the given generation,
+     * as captured by a callback with {@link #getGeneration()}.
+     *
+     * @param generation the generation the callback has been scheduled in
+     * @return <code>true</code> if the callback can still apply to this session
+     */
+    boolean isOpen(int generation) {
+        return !this.closed && this.generation == generation;
+    }
+
+    MenuFlow getFlow() { return flow; }
+    void setFlow(MenuFlow flow) { this.flow = flow; }
+
+    public SmartInventory getSmartInventory() { return inventory; }
+    public Player getPlayer() { return player; }
+    public InventoryContents getContents() { return contents; }
+
+}
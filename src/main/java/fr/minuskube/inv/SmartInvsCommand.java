@@ -0,0 +1,243 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * The <code>/smartinvs</code> command, showing the state of the
+ * {@link InventoryManager} of the SmartInvs plugin:
+ * </p>
+ *
+ * <ul>
+ *     <li><code>/smartinvs</code> - a summary of the sessions, tasks and caches</li>
+ *     <li><code>/smartinvs sessions</code> - the opened sessions by inventory id, with the rough size of their slot arrays</li>
+ *     <li><code>/smartinvs tasks</code> - the update tasks, and their load over the next second</li>
+ *     <li><code>/smartinvs metrics</code> - the providers taking the most update time, and the click rates</li>
+ *     <li><code>/smartinvs dump</code> - writes all of the above to a file in the data folder of the plugin</li>
+ * </ul>
+ */
+final class SmartInvsCommand implements TabExecutor {
+
+    private static final List<String> SECTIONS = Arrays.asList("sessions", "tasks", "metrics", "dump");
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final int TOP_PROVIDERS = 10;
+    private static final int LOAD_TICKS = 20;
+
+    // Header of an array with compressed class pointers, its elements are compressed references
+    private static final long ARRAY_HEADER = 16;
+    private static final long REFERENCE_SIZE = 4;
+
+    private final JavaPlugin plugin;
+
+    SmartInvsCommand(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        InventoryManager manager = SmartInvsPlugin.manager();
+
+        if (manager == null) {
+            sender.sendMessage(Component.text("SmartInvs is not enabled.", NamedTextColor.RED));
+            return true;
+        }
+
+        String section = args.length == 0 ? "" : args[0].toLowerCase(Locale.ROOT);
+
+        switch (section) {
+            case "":
+                send(sender, summary(manager));
+                break;
+            case "sessions":
+                send(sender, sessions(manager, false));
+                break;
+            case "tasks":
+                send(sender, tasks(manager));
+                break;
+            case "metrics":
+                send(sender, metrics(manager, TOP_PROVIDERS));
+                break;
+            case "dump":
+                dump(sender, manager);
+                break;
+            default:
+                return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length != 1)
+            return Collections.emptyList();
+
+        return SECTIONS.stream()
+                .filter(section -> section.startsWith(args[0].toLowerCase(Locale.ROOT)))
+                .collect(Collectors.toList());
+    }
+
+    private List<String> summary(InventoryManager manager) {
+        int sessions = 0;
+        long slotArrays = 0;
+
+        for (Set<InventoryContents> viewers : manager.getViewers().values()) {
+            for (InventoryContents contents : viewers) {
+                sessions++;
+                slotArrays += slotArraysSize(contents);
+            }
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add("SmartInvs");
+        lines.add("Sessions: " + sessions + " (" + manager.getViewers().size() + " inventories, slot arrays ~" + formatBytes(slotArrays) + ")");
+        lines.add("Update tasks: " + manager.getUpdateTaskCount());
+        lines.add("Suspended parents: " + manager.getSuspendedCount());
+        lines.add("Reopen cache: " + manager.getReopenCacheSize() + " slots");
+        lines.add("Reclaimed leaks: " + manager.getReclaimedLeaks());
+        return lines;
+    }
+
+    private List<String> sessions(InventoryManager manager, boolean players) {
+        List<String> lines = new ArrayList<>();
+        lines.add("Sessions by inventory");
+
+        manager.getViewers().entrySet().stream()
+                .sorted(Comparator.comparingInt((Map.Entry<SmartInventory, Set<InventoryContents>> entry) -> entry.getValue().size()).reversed())
+                .forEach(entry -> {
+                    long slotArrays = 0;
+                    for (InventoryContents contents : entry.getValue())
+                        slotArrays += slotArraysSize(contents);
+
+                    lines.add(entry.getKey().getId() + ": " + entry.getValue().size() + " sessions, slot arrays ~" + formatBytes(slotArrays));
+
+                    if (players) {
+                        for (InventoryContents contents : entry.getValue())
+                            lines.add("  " + contents.holder().getPlayer().getName() + ", page " + contents.pagination().getPage());
+                    }
+                });
+
+        return lines;
+    }
+
+    private List<String> tasks(InventoryManager manager) {
+        int[] load = manager.getUpdateLoad(LOAD_TICKS);
+        int max = Arrays.stream(load).max().orElse(0);
+
+        List<String> lines = new ArrayList<>();
+        lines.add("Update tasks");
+        lines.add("Running: " + manager.getUpdateTaskCount());
+        lines.add("Load over the next " + LOAD_TICKS + " ticks (max " + max + "): " + Arrays.toString(load));
+        return lines;
+    }
+
+    private List<String> metrics(InventoryManager manager, int limit) {
+        List<String> lines = new ArrayList<>();
+        lines.add("Providers by update time");
+
+        // The inventories without any viewer are not tracked by the manager anymore
+        manager.getViewers().keySet().stream()
+                .map(SmartInventory::getUpdateMetrics)
+                .sorted(Comparator.comparingLong(UpdateMetrics::getUpdateTime).reversed())
+                .limit(limit)
+                .forEach(metrics -> lines.add(String.format(Locale.ROOT,
+                        "%s: %.1f \u00b5s/update, %.1f updates/s (%.1f effective), %.1f clicks/s",
+                        metrics.getId(), metrics.getAverageUpdateTime() / 1000D, metrics.getUpdateRate(),
+                        metrics.getEffectiveUpdateRate(), metrics.getClickRate())));
+
+        return lines;
+    }
+
+    private void dump(CommandSender sender, InventoryManager manager) {
+        // Collected on the main thread, written asynchronously
+        List<String> lines = new ArrayList<>();
+        lines.addAll(summary(manager));
+        lines.add("");
+        lines.addAll(sessions(manager, true));
+        lines.add("");
+        lines.addAll(tasks(manager));
+        lines.add("");
+        lines.addAll(metrics(manager, Integer.MAX_VALUE));
+
+        File file = new File(this.plugin.getDataFolder(), "diagnostics-" + FILE_DATE.format(LocalDateTime.now()) + ".txt");
+
+        Bukkit.getScheduler().runTaskAsynchronously(this.plugin, () -> {
+            Component message;
+
+            try {
+                Files.createDirectories(file.getParentFile().toPath());
+                Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+
+                message = Component.text("Diagnostics written to " + file.getPath(), NamedTextColor.GREEN);
+            } catch (IOException e) {
+                Bukkit.getLogger().log(Level.SEVERE, "Could not write the diagnostics of SmartInvs to " + file.getPath(), e);
+                message = Component.text("Could not write the diagnostics, see the console.", NamedTextColor.RED);
+            }
+
+            Component result = message;
+            Bukkit.getScheduler().runTask(this.plugin, () -> sender.sendMessage(result));
+        });
+    }
+
+    private static void send(CommandSender sender, List<String> lines) {
+        sender.sendMessage(Component.text(lines.get(0), NamedTextColor.GOLD));
+
+        for (int i = 1; i < lines.size(); i++)
+            sender.sendMessage(Component.text(lines.get(i), NamedTextColor.GRAY));
+    }
+
+    /**
+     * Computes a rough size of the two slot arrays of the given contents (the items and
+     * the rendered stacks), assuming compressed references. This is only meant to compare
+     * the inventories with each other: the rest of the session and the items themselves,
+     * which are often shared, are not counted, and the actual layout depends on the JVM.
+     */
+    private static long slotArraysSize(InventoryContents contents) {
+        int slots = contents.inventory().getRows() * contents.inventory().getColumns();
+        return 2 * (ARRAY_HEADER + REFERENCE_SIZE * slots);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024)
+            return bytes + " B";
+        if (bytes < 1024 * 1024)
+            return String.format(Locale.ROOT, "%.1f KiB", bytes / 1024D);
+
+        return String.format(Locale.ROOT, "%.1f MiB", bytes / (1024D * 1024D));
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredServiceProvider;
+import org.bukkit.plugin.ServicePriority;
+import org.bukkit.plugin.ServicesManager;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * The listener shared by every copy of SmartInvs on the server,
+ * routing the inventory events to the {@link InventoryManager}
+ * owning the session of the inventory.
+ * </p>
+ *
+ * <p>
+ * SmartInvs is usually shaded (and relocated) into the plugins using it, so
+ * the copies can only talk to each other through the Bukkit and JDK types.
+ * The dispatcher is registered in the {@link ServicesManager} as a {@link Listener}
+ * service, and found by the other copies by its {@link #PROTOCOL} key, given by the dispatcher
+ * as a {@link Supplier}. Each copy joins it with the class of its {@link SmartInventoryHolder},
+ * which accepts the events of its inventories as a {@link Consumer}.
+ * <br>
+ * The key is versioned: a copy using another version of this protocol
+ * does not join the dispatcher, and registers its own.
+ * </p>
+ *
+ * <p>
+ * This way, the cost of an inventory event is a single holder check
+ * whatever the amount of plugins using SmartInvs.
+ * When the plugin which registered the dispatcher is disabled,
+ * the remaining managers join a new dispatcher. When another plugin
+ * is disabled, the holder classes it has loaded are removed from the dispatcher.
+ * </p>
+ */
+@SuppressWarnings("unchecked")
+final class SmartInvsDispatcher implements Listener, Consumer<Class<?>>, Supplier<String> {
+
+    /**
+     * The key identifying the dispatchers of this version of the protocol,
+     * deliberately not a class name so it isn't relocated when SmartInvs is shaded.
+     */
+    static final String PROTOCOL = "SmartInvsDispatcher/1";
+
+    private final Set<Class<?>> holderClasses = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private SmartInvsDispatcher() {}
+
+    /**
+     * Joins the dispatcher of the server with the holder class of this copy
+     * of SmartInvs, registering a new dispatcher if there is none yet.
+     *
+     * @param plugin the plugin registering the dispatcher if there is none
+     */
+    static synchronized void join(Plugin plugin) {
+        Listener dispatcher = find();
+
+        if(dispatcher == null) {
+            SmartInvsDispatcher created = new SmartInvsDispatcher();
+
+            Bukkit.getPluginManager().registerEvents(created, plugin);
+            Bukkit.getServicesManager().register(Listener.class, created, plugin, ServicePriority.Normal);
+
+            dispatcher = created;
+        }
+
+        ((Consumer<Class<?>>) dispatcher).accept(SmartInventoryHolder.class);
+    }
+
+    /**
+     * Finds the dispatcher registered by any copy of SmartInvs.
+     *
+     * @return the dispatcher, or <code>null</code> if there is none
+     */
+    static Listener find() {
+        for(RegisteredServiceProvider<Listener> registration : Bukkit.getServicesManager().getRegistrations(Listener.class)) {
+            if(isDispatcher(registration.getProvider()))
+                return registration.getProvider();
+        }
+
+        return null;
+    }
+
+    static boolean isDispatcher(Object provider) {
+        return provider instanceof Consumer && provider instanceof Supplier
+                && PROTOCOL.equals(((Supplier<?>) provider).get());
+    }
+
+    /**
+     * Routes the events of the inventories held by the given holder class to their holder.
+     *
+     * @param holderClass the {@link SmartInventoryHolder} class of a copy of SmartInvs
+     */
+    @Override
+    public void accept(Class<?> holderClass) {
+        this.holderClasses.add(holderClass);
+    }
+
+    @Override
+    public String get() {
+        return PROTOCOL;
+    }
+
+    private void dispatch(InventoryEvent event) {
+        InventoryHolder holder = event.getInventory().getHolder(false);
+
+        if(holder != null && this.holderClasses.contains(holder.getClass()))
+            ((Consumer<Event>) holder).accept(event);
+    }
+
+    @EventHandler(priority = EventPriority.LOW)
+    public void onInventoryClick(InventoryClickEvent event) {
+        dispatch(event);
+    }
+
+    @EventHandler(priority = EventPriority.LOW)
+    public void onInventoryDrag(InventoryDragEvent event) {
+        dispatch(event);
+    }
+
+    @EventHandler(priority = EventPriority.LOW)
+    public void onInventoryOpen(InventoryOpenEvent event) {
+        dispatch(event);
+    }
+
+    @EventHandler(priority = EventPriority.LOW)
+    public void onInventoryClose(InventoryCloseEvent event) {
+        dispatch(event);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        // Releases the classes of the copies shaded into the plugin, so its class loader can be collected
+        ClassLoader loader = event.getPlugin().getClass().getClassLoader();
+        this.holderClasses.removeIf(holderClass -> holderClass.getClassLoader() == loader);
+    }
+
+}
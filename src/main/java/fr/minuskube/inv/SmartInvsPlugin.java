@@ -16,6 +16,7 @@
 
 package fr.minuskube.inv;
 
+import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public class SmartInvsPlugin extends JavaPlugin {
@@ -26,6 +27,14 @@ public class SmartInvsPlugin extends JavaPlugin {
     @Override
     public void onEnable() {
         setPlugin(this);
+
+        PluginCommand command = getCommand("smartinvs");
+        if (command != null) {
+            SmartInvsCommand executor = new SmartInvsCommand(this);
+
+            command.setExecutor(executor);
+            command.setTabCompleter(executor);
+        }
     }
 
     @Override
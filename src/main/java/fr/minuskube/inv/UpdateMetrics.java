@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The update and click statistics of all the sessions of a {@link SmartInventory},
+ * collected by its {@link InventoryManager}.
+ * </p>
+ *
+ * <p>
+ * A cycle is a run of the update task of an inventory, which may skip the call to
+ * {@link fr.minuskube.inv.content.InventoryProvider#update(org.bukkit.entity.Player, fr.minuskube.inv.content.InventoryContents)}
+ * if the inventory hasn't been invalidated, or if its update frequency has been
+ * lengthened because its previous updates didn't change anything.
+ * An update is effective if it changed at least one displayed slot.
+ * </p>
+ *
+ * @see SmartInventory#getUpdateMetrics()
+ */
+public final class UpdateMetrics {
+
+    private final String id;
+
+    private long cycles, updates, effectiveUpdates;
+    private long updateTime, clicks;
+    private long since = System.nanoTime();
+
+    UpdateMetrics(String id) {
+        this.id = id;
+    }
+
+    void record(boolean updated, boolean changed) {
+        this.cycles++;
+
+        if(updated)
+            this.updates++;
+        if(changed)
+            this.effectiveUpdates++;
+    }
+
+    void recordUpdateTime(long nanos) {
+        this.updateTime += nanos;
+    }
+
+    void recordClick() {
+        this.clicks++;
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public void reset() {
+        this.cycles = 0;
+        this.updates = 0;
+        this.effectiveUpdates = 0;
+        this.updateTime = 0;
+        this.clicks = 0;
+        this.since = System.nanoTime();
+    }
+
+    /**
+     * Gets the amount of calls to the provider per second since the last reset.
+     *
+     * @return the update rate, in updates per second
+     */
+    public double getUpdateRate() {
+        return rate(this.updates);
+    }
+
+    /**
+     * Gets the amount of calls to the provider which changed
+     * at least one slot per second since the last reset.
+     *
+     * @return the effective update rate, in updates per second
+     */
+    public double getEffectiveUpdateRate() {
+        return rate(this.effectiveUpdates);
+    }
+
+    /**
+     * Gets the amount of clicks in the inventories per second since the last reset.
+     *
+     * @return the click rate, in clicks per second
+     */
+    public double getClickRate() {
+        return rate(this.clicks);
+    }
+
+    /**
+     * Gets the average time spent in the provider per update since the last reset.
+     *
+     * @return the average update time, in nanoseconds
+     */
+    public long getAverageUpdateTime() {
+        return this.updates == 0 ? 0 : this.updateTime / this.updates;
+    }
+
+    private double rate(long count) {
+        double seconds = (System.nanoTime() - this.since) / (double) TimeUnit.SECONDS.toNanos(1);
+        return seconds <= 0 ? 0 : count / seconds;
+    }
+
+    public String getId() { return id; }
+    public long getCycles() { return cycles; }
+    public long getUpdates() { return updates; }
+    public long getEffectiveUpdates() { return effectiveUpdates; }
+    public long getUpdateTime() { return updateTime; }
+    public long getClicks() { return clicks; }
+
+    @Override
+    public String toString() {
+        return "UpdateMetrics{" +
+                "id='" + id + '\'' +
+                ", cycles=" + cycles +
+                ", updates=" + updates +
+                ", effectiveUpdates=" + effectiveUpdates +
+                ", updateTime=" + updateTime +
+                ", clicks=" + clicks +
+                '}';
+    }
+
+}
@@ -19,6 +19,9 @@ package fr.minuskube.inv.content;
 import com.google.common.base.Preconditions;
 import fr.minuskube.inv.ClickableItem;
 import fr.minuskube.inv.SmartInventory;
+import fr.minuskube.inv.SmartInventoryHolder;
+import fr.minuskube.inv.jfr.MenuRenderEvent;
+import fr.minuskube.inv.util.Observable;
 import fr.minuskube.inv.util.Pattern;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
@@ -27,6 +30,8 @@ import org.bukkit.inventory.ItemStack;
 import java.util.*;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 /**
  * <p>
@@ -128,11 +133,39 @@ public interface InventoryContents {
      * all the items of the inventory.
      * The ClickableItems can be null when there is no
      * item in the corresponding slot.
+     * <br>
+     * The items are stored by slot index, so the returned array is kept
+     * next to them: an item put in the array is set in its slot on the next
+     * access to the contents (getting or setting an item, or the next update),
+     * and the same array is returned by the next calls.
      *
      * @return the items of the inventory
+     * @deprecated Use {@link #copyAll()} to read the items, and the
+     *             <code>set</code> methods to modify them.
      */
+    @Deprecated
     ClickableItem[][] all();
 
+    /**
+     * Returns a copy of the items of the inventory, as a 2D array
+     * of ClickableItems by row and column.
+     * The ClickableItems can be null when there is no
+     * item in the corresponding slot.
+     * <br>
+     * Modifying the returned array does not modify the inventory.
+     *
+     * @return a copy of the items of the inventory
+     */
+    default ClickableItem[][] copyAll() {
+        ClickableItem[][] all = all();
+        ClickableItem[][] copy = new ClickableItem[all.length][];
+
+        for(int row = 0; row < all.length; row++)
+            copy[row] = all[row].clone();
+
+        return copy;
+    }
+
 	/**
 	 * Returns a list of all the slots in the inventory.
 	 *
@@ -557,6 +590,11 @@ public interface InventoryContents {
      * <br>
      * This will replace the existing value for the property,
      * if there is one.
+     * <br>
+     * If a {@link PropertyKey} of SmartInvs has the given name and the value
+     * matches its type, the value is stored in the slot of that key.
+     * Otherwise, the value is stored by name as any other property,
+     * and the key is unset.
      *
      * @param name  the property's name
      * @param value the new property's value
@@ -564,6 +602,73 @@ public interface InventoryContents {
      */
     InventoryContents setProperty(String name, Object value);
 
+    /**
+     * Gets the value of the property of the given key,
+     * or the default value of the key if the property isn't set.
+     *
+     * @param key the property's key
+     * @param <T> the type of the value
+     * @return the property's value, or the key's default value
+     */
+    default <T> T property(PropertyKey<T> key) {
+        Object value = property(key.getName());
+        return key.getType().isInstance(value) ? key.getType().cast(value) : key.getDefault();
+    }
+
+    /**
+     * Same as {@link InventoryContents#property(PropertyKey)},
+     * but without boxing the value.
+     *
+     * @see InventoryContents#property(PropertyKey)
+     */
+    default boolean property(PropertyKey.BooleanKey key) {
+        return property((PropertyKey<Boolean>) key);
+    }
+
+    /**
+     * Same as {@link InventoryContents#property(PropertyKey)},
+     * but without boxing the value.
+     *
+     * @see InventoryContents#property(PropertyKey)
+     */
+    default int property(PropertyKey.IntKey key) {
+        return property((PropertyKey<Integer>) key);
+    }
+
+    /**
+     * Sets the value of the property of the given key.
+     * <br>
+     * Setting the value to <code>null</code> unsets the property.
+     *
+     * @param key   the property's key
+     * @param value the new property's value
+     * @param <T>   the type of the value
+     * @return <code>this</code>, for chained calls
+     */
+    default <T> InventoryContents setProperty(PropertyKey<T> key, T value) {
+        return setProperty(key.getName(), value);
+    }
+
+    /**
+     * Same as {@link InventoryContents#setProperty(PropertyKey, Object)},
+     * but without boxing the value.
+     *
+     * @see InventoryContents#setProperty(PropertyKey, Object)
+     */
+    default InventoryContents setProperty(PropertyKey.BooleanKey key, boolean value) {
+        return setProperty((PropertyKey<Boolean>) key, value);
+    }
+
+    /**
+     * Same as {@link InventoryContents#setProperty(PropertyKey, Object)},
+     * but without boxing the value.
+     *
+     * @see InventoryContents#setProperty(PropertyKey, Object)
+     */
+    default InventoryContents setProperty(PropertyKey.IntKey key, int value) {
+        return setProperty((PropertyKey<Integer>) key, value);
+    }
+
     /**
      * Makes a slot editable, which enables the player to
      * put items in and take items out of the inventory in the
@@ -582,30 +687,243 @@ public interface InventoryContents {
      */
     boolean isEditable(SlotPos slot);
 
+    /**
+     * Returns if the slot with the given index is editable or not.
+     *
+     * @param index the index of the slot
+     * @return {@code true} if the editable.
+     * @see #isEditable(SlotPos)
+     */
+    default boolean isEditable(int index) {
+        int columns = inventory().getColumns();
+        return isEditable(SlotPos.of(index / columns, index % columns));
+    }
+
+    /**
+     * Returns a live view of all the properties set in this {@link InventoryContents},
+     * including the properties of the {@link PropertyKey}s of SmartInvs.
+     * <br>
+     * Modifying the returned map modifies the properties, as with
+     * {@link #setProperty(String, Object)}.
+     *
+     * @return the properties, by name
+     */
     Map<String, Object> getProperties();
 
+    /**
+     * Gets the cache memoizing the visibility tests of the items
+     * of this {@link InventoryContents} for the current render pass.
+     * <br>
+     * Cannot be <code>null</code>.
+     *
+     * @return the visibility cache
+     * @see VisibilityCache#invalidate()
+     */
+    default VisibilityCache visibility() {
+        throw new UnsupportedOperationException("These contents have no visibility cache.");
+    }
+
+    /**
+     * Gets the holder of the inventory opened for this {@link InventoryContents},
+     * which the {@link fr.minuskube.inv.opener.InventoryOpener}s must use
+     * to create the inventory.
+     * <br>
+     * Cannot be <code>null</code>.
+     *
+     * @return the holder
+     */
+    default SmartInventoryHolder holder() {
+        throw new UnsupportedOperationException("These contents have no holder.");
+    }
+
+    /**
+     * Binds the slot at the given position to the given observable:
+     * the slot is set to the item rendered from the current value, and
+     * is rendered again every time the value changes, until the inventory
+     * is closed or the slot is unbound.
+     * <br>
+     * A bound slot costs nothing while its value doesn't change, so values
+     * changing rarely don't need to be set by {@link InventoryProvider#update(Player, InventoryContents)}.
+     *
+     * @param row      the row of the slot
+     * @param column   the column of the slot
+     * @param source   the observable value
+     * @param renderer the function rendering the item of the slot from the value
+     * @param <T>      the type of the value
+     * @return <code>this</code>, for chained calls
+     * @throws IllegalStateException If these contents are the template of an inventory
+     * @see Observable
+     */
+    default <T> InventoryContents bind(int row, int column, Observable<T> source, Function<T, ClickableItem> renderer) {
+        throw new UnsupportedOperationException("These contents don't support bound slots.");
+    }
+
+    /**
+     * Requests a redraw of this inventory: if its {@link SmartInventory} uses the
+     * invalidation mode, its {@link InventoryProvider#update(Player, InventoryContents)}
+     * method will be called at the next update, otherwise this does nothing.
+     * <br>
+     * Can be called from any thread.
+     *
+     * @see SmartInventory.Builder#invalidationMode(boolean)
+     */
+    default void invalidate() {
+        throw new UnsupportedOperationException("These contents don't support invalidation.");
+    }
+
+    /**
+     * Returns the amount of effective slot changes of this inventory since its
+     * opening, not counting the slots set again to an equal item.
+     *
+     * @return the amount of changes
+     */
+    default long getChangeCount() {
+        throw new UnsupportedOperationException("These contents don't count their changes.");
+    }
+
+    /**
+     * Gets the slots showing an item with the given tag.
+     *
+     * @param tag the tag
+     * @return the indexes of the slots, in ascending order
+     * @see ClickableItem#tag(String...)
+     */
+    default int[] getTaggedSlots(String tag) {
+        ClickableItem[][] all = copyAll();
+        int columns = inventory().getColumns();
+
+        return IntStream.range(0, all.length * columns)
+                .filter(index -> {
+                    ClickableItem item = all[index / columns][index % columns];
+                    return item != null && item.getTags().contains(tag);
+                })
+                .toArray();
+    }
+
+    /**
+     * Same as {@link InventoryContents#bind(int, int, Observable, Function)},
+     * but with a {@link SlotPos} instead of row and column indexes.
+     *
+     * @see InventoryContents#bind(int, int, Observable, Function)
+     */
+    default <T> InventoryContents bind(SlotPos slotPos, Observable<T> source, Function<T, ClickableItem> renderer) {
+        return bind(slotPos.getRow(), slotPos.getColumn(), source, renderer);
+    }
+
+    /**
+     * Removes the binding of the slot at the given position, if it has one.
+     * The item of the slot is kept.
+     *
+     * @param row    the row of the slot
+     * @param column the column of the slot
+     * @return <code>this</code>, for chained calls
+     */
+    default InventoryContents unbind(int row, int column) {
+        throw new UnsupportedOperationException("These contents don't support bound slots.");
+    }
+
     class Impl implements InventoryContents{
 
         private final SmartInventory inv;
         private final Player player;
 
-        private final ClickableItem[][] contents;
+        private final int rows, columns;
+
+        // Indexed by slot, as the inventory handle
+        private final ClickableItem[] contents;
+        private final ItemStack[] rendered;
+
+        // The rows returned by the deprecated all(), whose items are set on the next access
+        private ClickableItem[][] grid;
 
         private Pagination pagination = new Pagination.Impl();
         private Map<String, SlotIterator> iterators = new HashMap<>();
-        private Map<String, Object> properties = new HashMap<>();
+        private Object[] objectProperties = new Object[PropertyKey.count(PropertyKey.Kind.OBJECT)];
+        private byte[] booleanProperties = new byte[PropertyKey.count(PropertyKey.Kind.BOOLEAN)];
+        private int[] intProperties = new int[PropertyKey.count(PropertyKey.Kind.INT)];
+        private boolean[] intPropertiesSet = new boolean[intProperties.length];
+        private Map<String, Object> properties;
+        private Map<String, Object> propertiesView;
 
-        private Set<SlotPos> editableSlots = new HashSet<SlotPos>();
+        private final BitSet editableSlots = new BitSet();
+
+        // Slots by tag of their item, created with the first tagged item
+        private Map<String, BitSet> taggedSlots;
+
+        private final VisibilityCache visibility;
+        private final SmartInventoryHolder holder;
+        private long changeCount;
 
         public Impl(SmartInventory inv, Player player) {
             this.inv = inv;
             this.player = player;
-            this.contents = new ClickableItem[inv.getRows()][inv.getColumns()];
+            this.rows = inv.getRows();
+            this.columns = inv.getColumns();
+            this.contents = new ClickableItem[rows * columns];
+            this.rendered = new ItemStack[rows * columns];
+            this.visibility = new VisibilityCache(player);
+            this.holder = new SmartInventoryHolder(inv, player, this);
+
+            inv.getTemplate().ifPresent(this::copyTemplate);
+        }
+
+        /**
+         * Creates contents which are not linked to any player, and are
+         * never rendered. Used to render the {@link MenuTemplate}s.
+         */
+        Impl(SmartInventory inv) {
+            this(inv, null);
+        }
+
+        private void copyTemplate(MenuTemplate template) {
+            ClickableItem[] items = template.items();
+
+            System.arraycopy(items, 0, this.contents, 0, this.contents.length);
+            System.arraycopy(template.rendered(), 0, this.rendered, 0, this.rendered.length);
+
+            for(int slot : template.visibilityTestedSlots())
+                this.rendered[slot] = items[slot].getItem(this.visibility);
+
+            this.editableSlots.or(template.editableSlots());
+
+            for(int slot : template.taggedSlots())
+                tag(slot, items[slot], true);
+        }
+
+        private void tag(int index, ClickableItem item, boolean tagged) {
+            List<String> tags = item.getTags();
+
+            if(this.taggedSlots == null)
+                this.taggedSlots = new HashMap<>();
+
+            for(int i = 0; i < tags.size(); i++) {
+                String tag = tags.get(i);
+
+                if(tagged)
+                    this.taggedSlots.computeIfAbsent(tag, key -> new BitSet()).set(index);
+                else {
+                    BitSet slots = this.taggedSlots.get(tag);
+                    if(slots != null)
+                        slots.clear(index);
+                }
+            }
+        }
+
+        ClickableItem[] items() {
+            setGridItems();
+            return contents;
+        }
+
+        BitSet editableSlots() {
+            return editableSlots;
         }
 
         @Override
         public Map<String, Object> getProperties() {
-            return this.properties;
+            if(this.propertiesView == null)
+                this.propertiesView = new PropertiesView();
+
+            return this.propertiesView;
         }
 
         @Override
@@ -613,6 +931,65 @@ public interface InventoryContents {
             return inv;
         }
 
+        @Override
+        public VisibilityCache visibility() {
+            return visibility;
+        }
+
+        @Override
+        public SmartInventoryHolder holder() {
+            return holder;
+        }
+
+        @Override
+        public <T> InventoryContents bind(int row, int column, Observable<T> source, Function<T, ClickableItem> renderer) {
+            Preconditions.checkState(player != null, "The slots of a template cannot be bound.");
+            Preconditions.checkNotNull(source, "The source cannot be null.");
+            Preconditions.checkNotNull(renderer, "The renderer cannot be null.");
+
+            if(row < 0 || row >= rows || column < 0 || column >= columns)
+                return this;
+
+            int index = row * columns + column;
+
+            set(index, renderer.apply(source.get()));
+            inv.getManager().bind(this, index, source, renderer);
+            return this;
+        }
+
+        @Override
+        public <T> InventoryContents bind(SlotPos slotPos, Observable<T> source, Function<T, ClickableItem> renderer) {
+            return bind(slotPos.getRow(), slotPos.getColumn(), source, renderer);
+        }
+
+        @Override
+        public void invalidate() {
+            holder.invalidate();
+        }
+
+        @Override
+        public long getChangeCount() {
+            setGridItems();
+            return changeCount;
+        }
+
+        @Override
+        public int[] getTaggedSlots(String tag) {
+            setGridItems();
+
+            BitSet slots = this.taggedSlots == null ? null : this.taggedSlots.get(tag);
+            return slots == null ? new int[0] : slots.stream().toArray();
+        }
+
+        @Override
+        public InventoryContents unbind(int row, int column) {
+            if(row < 0 || row >= rows || column < 0 || column >= columns)
+                return this;
+
+            inv.getManager().unbind(this, row * columns + column);
+            return this;
+        }
+
         @Override
         public Pagination pagination() {
             return pagination;
@@ -648,15 +1025,48 @@ public interface InventoryContents {
         }
 
         @Override
+        @Deprecated
         public ClickableItem[][] all() {
-            return contents;
+            if(grid == null)
+                grid = copyAll();
+            else
+                setGridItems();
+
+            return grid;
+        }
+
+        @Override
+        public ClickableItem[][] copyAll() {
+            setGridItems();
+
+            ClickableItem[][] copy = new ClickableItem[rows][columns];
+
+            for(int row = 0; row < rows; row++)
+                System.arraycopy(contents, row * columns, copy[row], 0, columns);
+
+            return copy;
+        }
+
+        /**
+         * Sets the items put in the array returned by {@link #all()} since the last access.
+         */
+        private void setGridItems() {
+            if(grid == null)
+                return;
+
+            for(int index = 0; index < contents.length; index++) {
+                ClickableItem item = grid[index / columns][index % columns];
+
+                if(item != contents[index])
+                    setItem(index, item);
+            }
         }
 
         @Override
         public List<SlotPos> slots() {
-            List<SlotPos> slotPos = new ArrayList<>();
-            for (int row = 0; row < contents.length; row++) {
-                for(int column = 0; column < contents[0].length; column++) {
+            List<SlotPos> slotPos = new ArrayList<>(contents.length);
+            for(int row = 0; row < rows; row++) {
+                for(int column = 0; column < columns; column++) {
                     slotPos.add(SlotPos.of(row, column));
                 }
             }
@@ -665,11 +1075,11 @@ public interface InventoryContents {
 
         @Override
         public Optional<SlotPos> firstEmpty() {
-            for(int row = 0; row < contents.length; row++) {
-                for(int column = 0; column < contents[0].length; column++) {
-                    if(!this.get(row, column).isPresent())
-                        return Optional.of(new SlotPos(row, column));
-                }
+            setGridItems();
+
+            for(int index = 0; index < contents.length; index++) {
+                if(contents[index] == null)
+                    return Optional.of(new SlotPos(index / columns, index % columns));
             }
 
             return Optional.empty();
@@ -677,19 +1087,24 @@ public interface InventoryContents {
 
         @Override
         public Optional<ClickableItem> get(int index) {
-            int columnCount = this.inv.getColumns();
+            setGridItems();
 
-            return get(index / columnCount, index % columnCount);
+            if(index < 0 || index >= contents.length)
+                return Optional.empty();
+
+            return Optional.ofNullable(contents[index]);
         }
 
         @Override
         public Optional<ClickableItem> get(int row, int column) {
-            if(row < 0 || row >= contents.length)
+            setGridItems();
+
+            if(row < 0 || row >= rows)
                 return Optional.empty();
-            if(column < 0 || column >= contents[row].length)
+            if(column < 0 || column >= columns)
                 return Optional.empty();
 
-            return Optional.ofNullable(contents[row][column]);
+            return Optional.ofNullable(contents[row * columns + column]);
         }
 
         @Override
@@ -716,21 +1131,56 @@ public interface InventoryContents {
 
         @Override
         public InventoryContents set(int index, ClickableItem item) {
-            int columnCount = this.inv.getColumns();
+            if(index < 0 || index >= contents.length)
+                return this;
 
-            return set(index / columnCount, index % columnCount, item);
+            setGridItems();
+            return setItem(index, item);
+        }
+
+        private InventoryContents setItem(int index, ClickableItem item) {
+            ClickableItem previous = contents[index];
+            contents[index] = item;
+
+            if(grid != null)
+                grid[index / columns][index % columns] = item;
+
+            if(previous != null && !previous.getTags().isEmpty())
+                tag(index, previous, false);
+            if(item != null && !item.getTags().isEmpty())
+                tag(index, item, true);
+
+            // Template contents are never displayed to a player
+            if(player == null)
+                return this;
+
+            ItemStack stack = item == null ? null : item.getItem(visibility);
+
+            // An equal item is already displayed, unless the player can edit the slot. The same
+            // instance may have been modified since it was displayed, unless it is interned
+            ItemStack displayed = rendered[index];
+            boolean unchanged = stack == displayed
+                    ? stack == null || item.isShared()
+                    : stack != null && stack.equals(displayed);
+
+            if(unchanged && !editableSlots.get(index))
+                return this;
+
+            // A copy of the other items, so a later change of the given instance isn't taken as displayed
+            rendered[index] = stack == null || item.isShared() ? stack : stack.clone();
+            changeCount++;
+            update(index, stack);
+            return this;
         }
 
         @Override
         public InventoryContents set(int row, int column, ClickableItem item) {
-            if(row < 0 || row >= contents.length)
+            if(row < 0 || row >= rows)
                 return this;
-            if(column < 0 || column >= contents[row].length)
+            if(column < 0 || column >= columns)
                 return this;
 
-            contents[row][column] = item;
-            update(row, column, item == null ? null : item.getItem(player));
-            return this;
+            return set(row * columns + column, item);
         }
 
         @Override
@@ -740,13 +1190,11 @@ public interface InventoryContents {
 
         @Override
         public InventoryContents add(ClickableItem item) {
-            for(int row = 0; row < contents.length; row++) {
-                for(int column = 0; column < contents[0].length; column++) {
-                    if(contents[row][column] == null) {
-                        set(row, column, item);
-                        return this;
-                    }
-                }
+            setGridItems();
+
+            for(int index = 0; index < contents.length; index++) {
+                if(contents[index] == null)
+                    return set(index, item);
             }
 
             return this;
@@ -754,25 +1202,28 @@ public interface InventoryContents {
 
         @Override
         public InventoryContents updateItem(int index, ItemStack itemStack) {
-            int columnCount = this.inv.getColumns();
-
-            return updateItem(index / columnCount, index % columnCount, itemStack);
-        }
-
-        @Override
-        public InventoryContents updateItem(int row, int column, ItemStack itemStack) {
-            Optional<ClickableItem> optional = get(row, column);
+            Optional<ClickableItem> optional = get(index);
 
             if (!optional.isPresent()) {
-                set(row, column, ClickableItem.empty(itemStack));
+                set(index, ClickableItem.empty(itemStack));
                 return this;
             }
 
             ClickableItem newClickableItem = optional.get().cloneWithNewItem(itemStack);
-            set(row, column, newClickableItem);
+            set(index, newClickableItem);
             return this;
         }
 
+        @Override
+        public InventoryContents updateItem(int row, int column, ItemStack itemStack) {
+            if(row < 0 || row >= rows)
+                return this;
+            if(column < 0 || column >= columns)
+                return this;
+
+            return updateItem(row * columns + column, itemStack);
+        }
+
         @Override
         public InventoryContents updateItem(SlotPos slotPos, ItemStack itemStack) {
             return updateItem(slotPos.getRow(), slotPos.getColumn(), itemStack);
@@ -781,12 +1232,12 @@ public interface InventoryContents {
         @Override
         public Optional<SlotPos> findItem(ItemStack itemStack) {
             Preconditions.checkNotNull(itemStack, "The itemstack to look for cannot be null!");
-            for(int row = 0; row < contents.length; row++) {
-                for(int column = 0; column < contents[0].length; column++) {
-                    if(contents[row][column] != null &&
-                            itemStack.isSimilar(contents[row][column].getItem(this.player))) {
-                        return Optional.of(SlotPos.of(row, column));
-                    }
+            setGridItems();
+
+            for(int index = 0; index < contents.length; index++) {
+                if(contents[index] != null &&
+                        itemStack.isSimilar(contents[index].getItem(this.visibility))) {
+                    return Optional.of(SlotPos.of(index / columns, index % columns));
                 }
             }
             return Optional.empty();
@@ -795,36 +1246,35 @@ public interface InventoryContents {
         @Override
         public Optional<SlotPos> findItem(ClickableItem clickableItem) {
             Preconditions.checkNotNull(clickableItem, "The clickable item to look for cannot be null!");
-            return findItem(clickableItem.getItem(this.player));
+            return findItem(clickableItem.getItem(this.visibility));
         }
 
         @Override
         public InventoryContents fill(ClickableItem item) {
-            for(int row = 0; row < contents.length; row++)
-                for(int column = 0; column < contents[row].length; column++)
-                    set(row, column, item);
+            for(int index = 0; index < contents.length; index++)
+                set(index, item);
 
             return this;
         }
 
         @Override
         public InventoryContents fillRow(int row, ClickableItem item) {
-            if(row < 0 || row >= contents.length)
+            if(row < 0 || row >= rows)
                 return this;
 
-            for(int column = 0; column < contents[row].length; column++)
-                set(row, column, item);
+            for(int index = row * columns; index < (row + 1) * columns; index++)
+                set(index, item);
 
             return this;
         }
 
         @Override
         public InventoryContents fillColumn(int column, ClickableItem item) {
-            if(column < 0 || column >= contents[0].length)
+            if(column < 0 || column >= columns)
                 return this;
 
-            for(int row = 0; row < contents.length; row++)
-                set(row, column, item);
+            for(int index = column; index < contents.length; index += columns)
+                set(index, item);
 
             return this;
         }
@@ -968,40 +1418,278 @@ public interface InventoryContents {
         @SuppressWarnings("unchecked")
         @Override
         public <T> T property(String name) {
-            return (T) properties.get(name);
+            PropertyKey<?> key = PropertyKey.find(name);
+            if(key != null && isSet(key))
+                return (T) property(key);
+
+            return this.properties == null ? null : (T) this.properties.get(name);
         }
 
         @SuppressWarnings("unchecked")
         @Override
         public <T> T property(String name, T def) {
-            return properties.containsKey(name) ? (T) properties.get(name) : def;
+            PropertyKey<?> key = PropertyKey.find(name);
+            if(key != null && isSet(key))
+                return (T) property(key);
+
+            return this.properties != null && this.properties.containsKey(name) ? (T) this.properties.get(name) : def;
         }
 
+        @SuppressWarnings("unchecked")
         @Override
         public InventoryContents setProperty(String name, Object value) {
-            properties.put(name, value);
+            PropertyKey<Object> key = (PropertyKey<Object>) PropertyKey.find(name);
+            if(key != null) {
+                if(key.getType().isInstance(value)) {
+                    if(this.properties != null)
+                        this.properties.remove(name);
+
+                    return setProperty(key, value);
+                }
+
+                // Not a value of the key, kept by name as before the key was registered
+                setProperty(key, null);
+            }
+
+            if(this.properties == null)
+                this.properties = new HashMap<>();
+
+            this.properties.put(name, value);
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> T property(PropertyKey<T> key) {
+            switch(key.kind) {
+                case BOOLEAN:
+                    return (T) (Boolean) property((PropertyKey.BooleanKey) key);
+                case INT:
+                    return (T) (Integer) property((PropertyKey.IntKey) key);
+                default:
+                    Object value = key.index < objectProperties.length ? objectProperties[key.index] : null;
+                    return value != null ? (T) value : key.getDefault();
+            }
+        }
+
+        @Override
+        public boolean property(PropertyKey.BooleanKey key) {
+            byte value = key.index < booleanProperties.length ? booleanProperties[key.index] : 0;
+            return value == 0 ? key.getDefaultBoolean() : value == 2;
+        }
+
+        @Override
+        public int property(PropertyKey.IntKey key) {
+            return key.index < intProperties.length && intPropertiesSet[key.index]
+                    ? intProperties[key.index]
+                    : key.getDefaultInt();
+        }
+
+        @Override
+        public <T> InventoryContents setProperty(PropertyKey<T> key, T value) {
+            switch(key.kind) {
+                case BOOLEAN:
+                    if(value == null) {
+                        if(key.index < booleanProperties.length)
+                            booleanProperties[key.index] = 0;
+                        return this;
+                    }
+
+                    // Unboxed, a Boolean would select this generic method again
+                    return setProperty((PropertyKey.BooleanKey) key, ((Boolean) value).booleanValue());
+                case INT:
+                    if(value == null) {
+                        if(key.index < intPropertiesSet.length)
+                            intPropertiesSet[key.index] = false;
+                        return this;
+                    }
+
+                    return setProperty((PropertyKey.IntKey) key, ((Integer) value).intValue());
+                default:
+                    if(key.index >= objectProperties.length)
+                        objectProperties = Arrays.copyOf(objectProperties, PropertyKey.count(PropertyKey.Kind.OBJECT));
+
+                    objectProperties[key.index] = value;
+                    return this;
+            }
+        }
+
+        @Override
+        public InventoryContents setProperty(PropertyKey.BooleanKey key, boolean value) {
+            if(key.index >= booleanProperties.length)
+                booleanProperties = Arrays.copyOf(booleanProperties, PropertyKey.count(PropertyKey.Kind.BOOLEAN));
+
+            booleanProperties[key.index] = (byte) (value ? 2 : 1);
             return this;
         }
 
-        private void update(int row, int column, ItemStack item) {
-            if(!inv.getManager().getOpenedPlayers(inv).contains(player))
+        @Override
+        public InventoryContents setProperty(PropertyKey.IntKey key, int value) {
+            if(key.index >= intProperties.length) {
+                int count = PropertyKey.count(PropertyKey.Kind.INT);
+
+                intProperties = Arrays.copyOf(intProperties, count);
+                intPropertiesSet = Arrays.copyOf(intPropertiesSet, count);
+            }
+
+            intProperties[key.index] = value;
+            intPropertiesSet[key.index] = true;
+            return this;
+        }
+
+        private boolean isSet(String name) {
+            PropertyKey<?> key = PropertyKey.find(name);
+            if(key != null && isSet(key))
+                return true;
+
+            return this.properties != null && this.properties.containsKey(name);
+        }
+
+        private void unsetProperty(String name) {
+            PropertyKey<?> key = PropertyKey.find(name);
+            if(key != null)
+                setProperty(key, null);
+
+            if(this.properties != null)
+                this.properties.remove(name);
+        }
+
+        private boolean isSet(PropertyKey<?> key) {
+            switch(key.kind) {
+                case BOOLEAN:
+                    return key.index < booleanProperties.length && booleanProperties[key.index] != 0;
+                case INT:
+                    return key.index < intPropertiesSet.length && intPropertiesSet[key.index];
+                default:
+                    return key.index < objectProperties.length && objectProperties[key.index] != null;
+            }
+        }
+
+        /**
+         * The view returned by {@link #getProperties()}, reading and
+         * writing the properties of these contents by name.
+         */
+        private final class PropertiesView extends AbstractMap<String, Object> {
+
+            @Override
+            public Object get(Object name) {
+                return name instanceof String ? property((String) name) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object name) {
+                return name instanceof String && isSet((String) name);
+            }
+
+            @Override
+            public Object put(String name, Object value) {
+                Object previous = property(name);
+                setProperty(name, value);
+                return previous;
+            }
+
+            @Override
+            public Object remove(Object name) {
+                if(!(name instanceof String))
+                    return null;
+
+                Object previous = property((String) name);
+                unsetProperty((String) name);
+                return previous;
+            }
+
+            @Override
+            public Set<Entry<String, Object>> entrySet() {
+                return new AbstractSet<Entry<String, Object>>() {
+                    @Override
+                    public Iterator<Entry<String, Object>> iterator() {
+                        Iterator<String> names = names().iterator();
+
+                        return new Iterator<Entry<String, Object>>() {
+                            private String current;
+
+                            @Override
+                            public boolean hasNext() {
+                                return names.hasNext();
+                            }
+
+                            @Override
+                            public Entry<String, Object> next() {
+                                String name = this.current = names.next();
+
+                                return new SimpleEntry<String, Object>(name, property(name)) {
+                                    @Override
+                                    public Object setValue(Object value) {
+                                        super.setValue(value);
+                                        return put(name, value);
+                                    }
+                                };
+                            }
+
+                            @Override
+                            public void remove() {
+                                Preconditions.checkState(this.current != null);
+
+                                unsetProperty(this.current);
+                                this.current = null;
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return names().size();
+                    }
+                };
+            }
+
+            private Set<String> names() {
+                Set<String> names = properties == null ? new LinkedHashSet<>() : new LinkedHashSet<>(properties.keySet());
+
+                for(PropertyKey<?> key : PropertyKey.named()) {
+                    if(isSet(key))
+                        names.add(key.getName());
+                }
+
+                return names;
+            }
+
+        }
+
+        private void update(int index, ItemStack item) {
+            // Not opened yet, the opener fills the inventory when creating it
+            Inventory handle = holder.getInventory();
+            if(handle == null)
                 return;
 
-            Inventory topInventory = player.getOpenInventory().getTopInventory();
-            topInventory.setItem(inv.getColumns() * row + column, item);
+            MenuRenderEvent recorded = MenuRenderEvent.start();
+            handle.setItem(index, item);
+
+            if(recorded != null)
+                recorded.commit(inv.getId(), player.getUniqueId(), index);
         }
 
         @Override
         public void setEditable(SlotPos slot, boolean editable) {
-            if(editable)
-                editableSlots.add(slot);
-            else
-                editableSlots.remove(slot);
+            int row = slot.getRow(), column = slot.getColumn();
+            if(row < 0 || row >= rows || column < 0 || column >= columns)
+                return;
+
+            editableSlots.set(row * columns + column, editable);
         }
 
         @Override
         public boolean isEditable(SlotPos slot) {
-            return editableSlots.contains(slot);
+            int row = slot.getRow(), column = slot.getColumn();
+            if(row < 0 || row >= rows || column < 0 || column >= columns)
+                return false;
+
+            return editableSlots.get(row * columns + column);
+        }
+
+        @Override
+        public boolean isEditable(int index) {
+            return index >= 0 && index < contents.length && editableSlots.get(index);
         }
 
     }
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.content;
+
+import fr.minuskube.inv.ClickableItem;
+import fr.minuskube.inv.SmartInventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * The static part of the contents of a {@link SmartInventory}
+ * (borders, decoration, navigation buttons, ...), rendered once
+ * when the inventory is built.
+ * </p>
+ *
+ * <p>
+ * Every new {@link InventoryContents} of the inventory starts as a copy
+ * of its template, so the {@link InventoryProvider#init(org.bukkit.entity.Player, InventoryContents)}
+ * method only has to set the dynamic slots.
+ * </p>
+ *
+ * @see SmartInventory.Builder#template(Consumer)
+ */
+public class MenuTemplate {
+
+    private final int rows, columns;
+
+    private final ClickableItem[] items;
+    private final ItemStack[] rendered;
+    private final int[] visibilityTestedSlots;
+    private final int[] taggedSlots;
+    private final BitSet editableSlots;
+
+    private MenuTemplate(int rows, int columns, ClickableItem[] items, BitSet editableSlots) {
+        this.rows = rows;
+        this.columns = columns;
+        this.items = items;
+        this.rendered = new ItemStack[items.length];
+        this.editableSlots = editableSlots;
+
+        int[] tested = new int[items.length];
+        int testedCount = 0;
+
+        int[] tagged = new int[items.length];
+        int taggedCount = 0;
+
+        // Without any visibility test, the items don't depend on the player
+        VisibilityCache headless = new VisibilityCache(null);
+
+        for(int slot = 0; slot < items.length; slot++) {
+            ClickableItem item = items[slot];
+            if(item == null)
+                continue;
+
+            if(!item.getTags().isEmpty())
+                tagged[taggedCount++] = slot;
+
+            // Items depending on the player are rendered when the contents are created
+            if(item.hasVisibilityTest())
+                tested[testedCount++] = slot;
+            else
+                this.rendered[slot] = item.getItem(headless);
+        }
+
+        this.visibilityTestedSlots = Arrays.copyOf(tested, testedCount);
+        this.taggedSlots = Arrays.copyOf(tagged, taggedCount);
+    }
+
+    /**
+     * Renders the template of the given inventory by applying the given
+     * layout to empty contents, which are not linked to any player.
+     *
+     * @param inv    the inventory
+     * @param layout the static layout, setting the items shared by every opening of the inventory
+     * @return the rendered template
+     */
+    public static MenuTemplate render(SmartInventory inv, Consumer<InventoryContents> layout) {
+        InventoryContents.Impl contents = new InventoryContents.Impl(inv);
+        layout.accept(contents);
+
+        return new MenuTemplate(inv.getRows(), inv.getColumns(),
+                contents.items().clone(), (BitSet) contents.editableSlots().clone());
+    }
+
+    ClickableItem[] items() { return items; }
+    ItemStack[] rendered() { return rendered; }
+    int[] visibilityTestedSlots() { return visibilityTestedSlots; }
+    int[] taggedSlots() { return taggedSlots; }
+    BitSet editableSlots() { return editableSlots; }
+
+    public int getRows() { return rows; }
+    public int getColumns() { return columns; }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.content;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * <p>
+ * A typed handle to a property of an {@link InventoryContents}.
+ * </p>
+ *
+ * <p>
+ * Keys are created once, usually in a <code>static final</code> field,
+ * and each key gets its own slot in the property arrays of every
+ * {@link InventoryContents}, so reading a property is a single array access
+ * instead of a map lookup.
+ * <br>
+ * {@link BooleanKey} and {@link IntKey} store their values without boxing.
+ * </p>
+ *
+ * <p>
+ * Keys are identified by their instance, not by their name: two plugins
+ * creating a key with the same name get two distinct properties. The name
+ * is only used to describe the key.
+ * <br>
+ * The properties accessed by name ({@link InventoryContents#property(String)})
+ * are separate from the keys, except for the keys of SmartInvs itself
+ * (such as {@link #ALLOW_SHIFT}), which are also accessible by their name.
+ * </p>
+ *
+ * @param <T> the type of the value of the property
+ */
+public class PropertyKey<T> {
+
+    enum Kind { OBJECT, BOOLEAN, INT }
+
+    private static final int[] COUNTS = new int[Kind.values().length];
+
+    /**
+     * Whether the player can move items from his own inventory to
+     * the SmartInvs inventory with shift-clicks. Defaults to <code>false</code>.
+     */
+    public static final BooleanKey ALLOW_SHIFT = ofBoolean("allowShift", false);
+
+    // The keys of SmartInvs, accessible by name for compatibility with the properties set by name
+    private static final Map<String, PropertyKey<?>> NAMED = Collections.singletonMap(ALLOW_SHIFT.getName(), ALLOW_SHIFT);
+
+    private final String name;
+    private final Class<T> type;
+    private final T defaultValue;
+
+    final Kind kind;
+    final int index;
+
+    private PropertyKey(String name, Class<T> type, T defaultValue, Kind kind) {
+        this.name = name;
+        this.type = type;
+        this.defaultValue = defaultValue;
+        this.kind = kind;
+
+        synchronized(COUNTS) {
+            this.index = COUNTS[kind.ordinal()]++;
+        }
+    }
+
+    /**
+     * Creates a new property key.
+     *
+     * @param name         the name of the property, which does not need to be unique
+     * @param type         the type of the value of the property
+     * @param defaultValue the value of the property when it isn't set, can be <code>null</code>
+     * @param <T>          the type of the value of the property
+     * @return the created key
+     */
+    public static <T> PropertyKey<T> of(String name, Class<T> type, T defaultValue) {
+        return new PropertyKey<>(Preconditions.checkNotNull(name), Preconditions.checkNotNull(type), defaultValue, Kind.OBJECT);
+    }
+
+    /**
+     * Creates a new boolean property key, stored without boxing.
+     *
+     * @param name         the name of the property, which does not need to be unique
+     * @param defaultValue the value of the property when it isn't set
+     * @return the created key
+     */
+    public static BooleanKey ofBoolean(String name, boolean defaultValue) {
+        return new BooleanKey(Preconditions.checkNotNull(name), defaultValue);
+    }
+
+    /**
+     * Creates a new int property key, stored without boxing.
+     *
+     * @param name         the name of the property, which does not need to be unique
+     * @param defaultValue the value of the property when it isn't set
+     * @return the created key
+     */
+    public static IntKey ofInt(String name, int defaultValue) {
+        return new IntKey(Preconditions.checkNotNull(name), defaultValue);
+    }
+
+    /**
+     * Gets the key of SmartInvs accessible by the given name.
+     *
+     * @param name the name of the property
+     * @return the found key, if there is one
+     */
+    public static Optional<PropertyKey<?>> byName(String name) {
+        return Optional.ofNullable(NAMED.get(name));
+    }
+
+    /**
+     * Gets the keys of SmartInvs accessible by their name.
+     *
+     * @return an unmodifiable view of the keys
+     */
+    public static Collection<PropertyKey<?>> named() {
+        return NAMED.values();
+    }
+
+    static PropertyKey<?> find(String name) {
+        return NAMED.get(name);
+    }
+
+    static int count(Kind kind) {
+        synchronized(COUNTS) {
+            return COUNTS[kind.ordinal()];
+        }
+    }
+
+    public String getName() { return name; }
+    public Class<T> getType() { return type; }
+    public T getDefault() { return defaultValue; }
+
+    @Override
+    public String toString() {
+        return "PropertyKey{" +
+                "name='" + name + '\'' +
+                ", type=" + type.getSimpleName() +
+                '}';
+    }
+
+    /**
+     * A property key whose value is a primitive <code>boolean</code>.
+     */
+    public static final class BooleanKey extends PropertyKey<Boolean> {
+
+        private final boolean defaultBoolean;
+
+        private BooleanKey(String name, boolean defaultValue) {
+            super(name, Boolean.class, defaultValue, Kind.BOOLEAN);
+            this.defaultBoolean = defaultValue;
+        }
+
+        public boolean getDefaultBoolean() { return defaultBoolean; }
+
+    }
+
+    /**
+     * A property key whose value is a primitive <code>int</code>.
+     */
+    public static final class IntKey extends PropertyKey<Integer> {
+
+        private final int defaultInt;
+
+        private IntKey(String name, int defaultValue) {
+            super(name, Integer.class, defaultValue, Kind.INT);
+            this.defaultInt = defaultValue;
+        }
+
+        public int getDefaultInt() { return defaultInt; }
+
+    }
+
+}
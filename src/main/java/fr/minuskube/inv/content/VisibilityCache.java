@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.content;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ * Memoizes the results of the visibility tests
+ * ({@link fr.minuskube.inv.ClickableItem#canSee(Predicate)}) used to render
+ * the items of a single {@link InventoryContents}.
+ * </p>
+ *
+ * <p>
+ * Predicates are compared by identity, so an item using the same predicate
+ * instance on every slot of the inventory only runs it once per render pass.
+ * A render pass never outlives the server tick it started in: the results are
+ * forgotten on the next tick, when the contents are opened, before each call to
+ * {@link InventoryProvider#update(Player, InventoryContents)}, and whenever
+ * {@link #invalidate()} is called (for example after the permissions of
+ * the player have been recalculated).
+ * </p>
+ *
+ * <p>
+ * Clicks do not use this cache, the tests of the clicked item are always run again.
+ * </p>
+ */
+public class VisibilityCache {
+
+    private final Player player;
+    private final Map<Predicate<Player>, Boolean> results = new IdentityHashMap<>();
+    private int tick;
+
+    public VisibilityCache(Player player) {
+        this.player = player;
+    }
+
+    /**
+     * Tests the given predicate against the player of this cache,
+     * or returns the result of a previous test of the same predicate
+     * during the current render pass.
+     * <br>
+     * A <code>null</code> predicate always passes.
+     *
+     * @param predicate the predicate to test
+     * @return the result of the predicate
+     */
+    public boolean test(Predicate<Player> predicate) {
+        if(predicate == null)
+            return true;
+
+        int currentTick = Bukkit.getCurrentTick();
+
+        if(currentTick != this.tick) {
+            this.results.clear();
+            this.tick = currentTick;
+        }
+
+        Boolean result = this.results.get(predicate);
+
+        if(result == null) {
+            result = predicate.test(this.player);
+            this.results.put(predicate, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Forgets all the memoized results, the next calls to
+     * {@link #test(Predicate)} will run the predicates again.
+     */
+    public void invalidate() {
+        this.results.clear();
+    }
+
+    public Player getPlayer() { return player; }
+
+}
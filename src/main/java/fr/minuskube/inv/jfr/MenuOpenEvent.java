@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+
+/**
+ * Emitted when a {@link fr.minuskube.inv.SmartInventory} is opened, including the initialization of its contents.
+ */
+@Name("fr.minuskube.inv.MenuOpen")
+@Label("Menu Open")
+@Category("SmartInvs")
+@Description("A SmartInvs inventory opened for a player")
+@StackTrace(false)
+public final class MenuOpenEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(MenuOpenEvent.class);
+
+    @Label("Inventory Id")
+    String inventoryId;
+
+    @Label("Player Id")
+    String player;
+
+    /**
+     * Starts timing a new event, if a recording enables it.
+     *
+     * @return the started event, or <code>null</code> if the event is disabled
+     */
+    public static MenuOpenEvent start() {
+        if(!TYPE.isEnabled())
+            return null;
+
+        MenuOpenEvent event = new MenuOpenEvent();
+        event.begin();
+        return event;
+    }
+
+    public void commit(String inventoryId, UUID player) {
+        end();
+
+        if(!shouldCommit())
+            return;
+
+        this.inventoryId = inventoryId;
+        this.player = player.toString();
+
+        commit();
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.UUID;
+
+/**
+ * Emitted when the update task of a SmartInvs inventory called its provider.
+ */
+@Name("fr.minuskube.inv.MenuUpdate")
+@Label("Menu Update")
+@Category("SmartInvs")
+@Description("An update of a SmartInvs inventory by its provider")
+@StackTrace(false)
+public final class MenuUpdateEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(MenuUpdateEvent.class);
+
+    @Label("Inventory Id")
+    String inventoryId;
+
+    @Label("Player Id")
+    String player;
+
+    @Label("Changed")
+    boolean changed;
+
+    /**
+     * Starts timing a new event, if a recording enables it.
+     *
+     * @return the started event, or <code>null</code> if the event is disabled
+     */
+    public static MenuUpdateEvent start() {
+        if(!TYPE.isEnabled())
+            return null;
+
+        MenuUpdateEvent event = new MenuUpdateEvent();
+        event.begin();
+        return event;
+    }
+
+    public void commit(String inventoryId, UUID player, boolean changed) {
+        end();
+
+        if(!shouldCommit())
+            return;
+
+        this.inventoryId = inventoryId;
+        this.player = player.toString();
+        this.changed = changed;
+
+        commit();
+    }
+
+}
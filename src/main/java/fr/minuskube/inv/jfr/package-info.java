@@ -0,0 +1,24 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+/**
+ * The Java Flight Recorder events of SmartInvs, recorded in the "SmartInvs" category.
+ * <br>
+ * The events are only created while a recording enables them, so they cost
+ * nothing otherwise. The render events are disabled by default, as there is
+ * one for each slot written, and must be enabled in the settings of the recording.
+ */
+package fr.minuskube.inv.jfr;
@@ -17,8 +17,8 @@
 package fr.minuskube.inv.opener;
 
 import com.google.common.base.Preconditions;
-import fr.minuskube.inv.InventoryManager;
 import fr.minuskube.inv.SmartInventory;
+import fr.minuskube.inv.content.InventoryContents;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryType;
@@ -33,10 +33,10 @@ public class ChestInventoryOpener implements InventoryOpener {
         Preconditions.checkArgument(inv.getRows() >= 1 && inv.getRows() <= 6,
                 "The row count for the chest inventory must be between 1 and 6, found: %s", inv.getRows());
 
-        InventoryManager manager = inv.getManager();
-        Inventory handle = Bukkit.createInventory(player, inv.getRows() * inv.getColumns(), inv.getTitle());
+        InventoryContents contents = inv.getManager().getContents(player).get();
+        Inventory handle = Bukkit.createInventory(contents.holder(), inv.getRows() * inv.getColumns(), inv.getTitle());
 
-        fill(handle, manager.getContents(player).get(), player);
+        fill(handle, contents, player);
 
         player.openInventory(handle);
         return handle;
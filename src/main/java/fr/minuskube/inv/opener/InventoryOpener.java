@@ -24,19 +24,31 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryType;
 import org.bukkit.inventory.Inventory;
 
+import java.util.Optional;
+
 public interface InventoryOpener {
 
+    /**
+     * Creates the inventory of the given {@link SmartInventory}, fills it and opens it.
+     * <br>
+     * The inventory should be created with the holder of the contents of the player
+     * ({@link InventoryContents#holder()}), so its events are routed directly to them.
+     *
+     * @param inv    the inventory to open
+     * @param player the player to open the inventory for
+     * @return the created inventory
+     */
     Inventory open(SmartInventory inv, Player player);
     boolean supports(InventoryType type);
 
     default void fill(Inventory handle, InventoryContents contents, Player player) {
-        ClickableItem[][] items = contents.all();
+        int size = contents.inventory().getRows() * contents.inventory().getColumns();
+
+        for(int index = 0; index < size; index++) {
+            Optional<ClickableItem> item = contents.get(index);
 
-        for(int row = 0; row < items.length; row++) {
-            for(int column = 0; column < items[row].length; column++) {
-                if(items[row][column] != null)
-                    handle.setItem(9 * row + column, items[row][column].getItem(player));
-            }
+            if(item.isPresent())
+                handle.setItem(index, item.get().getItem(contents.visibility()));
         }
     }
     
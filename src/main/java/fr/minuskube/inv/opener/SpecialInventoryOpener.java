@@ -17,8 +17,8 @@
 package fr.minuskube.inv.opener;
 
 import com.google.common.collect.ImmutableList;
-import fr.minuskube.inv.InventoryManager;
 import fr.minuskube.inv.SmartInventory;
+import fr.minuskube.inv.content.InventoryContents;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryType;
@@ -42,10 +42,10 @@ public class SpecialInventoryOpener implements InventoryOpener {
 
     @Override
     public Inventory open(SmartInventory inv, Player player) {
-        InventoryManager manager = inv.getManager();
-        Inventory handle = Bukkit.createInventory(player, inv.getType(), inv.getTitle());
+        InventoryContents contents = inv.getManager().getContents(player).get();
+        Inventory handle = Bukkit.createInventory(contents.holder(), inv.getType(), inv.getTitle());
 
-        fill(handle, manager.getContents(player).get(), player);
+        fill(handle, contents, player);
 
         player.openInventory(handle);
         return handle;
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.util;
+
+import com.google.common.base.Preconditions;
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A pool of canonical {@link ItemStack} instances, shared between all the
+ * inventories using identical items (fillers, navigation buttons, ...).
+ * </p>
+ *
+ * <p>
+ * Items are looked up by their content hash ({@link ItemStack#hashCode()})
+ * and compared with {@link ItemStack#equals(Object)}. The pool keeps its
+ * own copy of every item it interns, so modifying an item after interning it
+ * does not affect the inventories sharing its canonical instance.
+ * Canonical instances are only weakly referenced, and are released once no
+ * {@link fr.minuskube.inv.ClickableItem} uses them anymore.
+ * </p>
+ *
+ * <p>
+ * The pool holds at most {@link #getMaximumSize()} items. Once full, the items
+ * which are not in it yet are copied but not pooled, until some items are released.
+ * </p>
+ *
+ * <p>
+ * <b>Warning:</b> Interned items are shared and must never be modified,
+ * copy them with {@link ItemStack#clone()} first.
+ * </p>
+ */
+public class ItemStackPool {
+
+    private static final ItemStackPool SHARED = new ItemStackPool();
+
+    private final Map<Integer, List<Entry>> entries = new HashMap<>();
+    private final ReferenceQueue<ItemStack> released = new ReferenceQueue<>();
+    private final int maximumSize;
+    private int size;
+
+    /**
+     * Creates a pool holding at most 4096 items.
+     */
+    public ItemStackPool() {
+        this(4096);
+    }
+
+    /**
+     * Creates a pool holding at most the given amount of items.
+     *
+     * @param maximumSize the maximum amount of items
+     * @throws IllegalArgumentException If maximumSize is smaller than 1.
+     */
+    public ItemStackPool(int maximumSize) {
+        Preconditions.checkArgument(maximumSize > 0, "maximumSize must be > 0");
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the canonical instance of the given item, adding a copy
+     * of the item to this pool if there is no identical item in it yet.
+     * <br>
+     * If the pool is full, a copy of the item which is not pooled is returned instead.
+     *
+     * @param item the item to intern, can be <code>null</code>
+     * @return the canonical instance, or <code>null</code> if the item is <code>null</code>
+     */
+    public synchronized ItemStack intern(ItemStack item) {
+        if(item == null)
+            return null;
+
+        expungeReleased();
+
+        int hash = item.hashCode();
+        List<Entry> bucket = this.entries.get(hash);
+
+        if(bucket != null) {
+            for(Entry entry : bucket) {
+                ItemStack canonical = entry.get();
+
+                if(canonical == item || (canonical != null && canonical.equals(item)))
+                    return canonical;
+            }
+        }
+
+        ItemStack canonical = item.clone();
+
+        if(this.size >= this.maximumSize)
+            return canonical;
+
+        if(bucket == null) {
+            bucket = new ArrayList<>(1);
+            this.entries.put(hash, bucket);
+        }
+
+        bucket.add(new Entry(canonical, hash, this.released));
+        this.size++;
+        return canonical;
+    }
+
+    /**
+     * Returns the amount of canonical items currently held by this pool.
+     *
+     * @return the amount of items
+     */
+    public synchronized int size() {
+        expungeReleased();
+        return this.size;
+    }
+
+    public int getMaximumSize() { return maximumSize; }
+
+    /**
+     * Removes all the items from this pool.
+     * <br>
+     * The canonical instances already given are still valid, but will not be
+     * returned anymore by {@link #intern(ItemStack)}.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.size = 0;
+
+        while(this.released.poll() != null);
+    }
+
+    private void expungeReleased() {
+        Reference<? extends ItemStack> reference;
+
+        while((reference = this.released.poll()) != null) {
+            Entry entry = (Entry) reference;
+            List<Entry> bucket = this.entries.get(entry.hash);
+
+            if(bucket != null && bucket.remove(entry)) {
+                this.size--;
+
+                if(bucket.isEmpty())
+                    this.entries.remove(entry.hash);
+            }
+        }
+    }
+
+    /**
+     * Gets the pool shared by all the inventories of this server,
+     * used by {@link fr.minuskube.inv.ClickableItem#shared(ItemStack, java.util.function.Consumer)}.
+     *
+     * @return the shared pool
+     */
+    public static ItemStackPool shared() { return SHARED; }
+
+    private static final class Entry extends WeakReference<ItemStack> {
+
+        private final int hash;
+
+        private Entry(ItemStack item, int hash, ReferenceQueue<ItemStack> queue) {
+            super(item, queue);
+            this.hash = hash;
+        }
+
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.util;
+
+import com.google.common.base.Preconditions;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>
+ * A value which notifies its subscribers when it changes,
+ * used to bind slots of inventories to it
+ * ({@link fr.minuskube.inv.content.InventoryContents#bind(int, int, Observable, Function)}).
+ * </p>
+ *
+ * <p>
+ * The bound slots are rendered again only when the value changes,
+ * instead of being set again by every {@link fr.minuskube.inv.content.InventoryProvider#update(Player, fr.minuskube.inv.content.InventoryContents)}.
+ * The value can be changed from any thread, the slots are rendered on the main thread.
+ * The changes are atomic, but the subscribers are notified outside of the lock of the value.
+ * </p>
+ *
+ * <p>
+ * A change can target a single player (for example a {@link PlayerEvent}),
+ * in which case only the inventories of this player are rendered again.
+ * </p>
+ *
+ * @param <T> the type of the value
+ */
+public class Observable<T> {
+
+    private volatile T value;
+    private final CopyOnWriteArrayList<BiConsumer<Observable<?>, Player>> subscribers = new CopyOnWriteArrayList<>();
+
+    protected Observable(T value) {
+        this.value = value;
+    }
+
+    /**
+     * Creates an observable value.
+     *
+     * @param value the initial value, can be <code>null</code>
+     * @param <T>   the type of the value
+     * @return the created observable
+     */
+    public static <T> Observable<T> of(T value) {
+        return new Observable<>(value);
+    }
+
+    /**
+     * Creates an observable whose value is the last fired event of the given type,
+     * changing every time an event of this type is fired and not cancelled.
+     * <br>
+     * If the event is a {@link PlayerEvent}, the change only targets its player.
+     * <br>
+     * The listener stays registered until {@link EventObservable#unregister()} is called,
+     * or the plugin is disabled.
+     *
+     * @param plugin the plugin registering the listener of the event
+     * @param type   the type of the event
+     * @param <E>    the type of the event
+     * @return the created observable, whose value is <code>null</code> until the first event
+     */
+    public static <E extends Event> EventObservable<E> ofEvent(Plugin plugin, Class<E> type) {
+        Preconditions.checkNotNull(type, "The type of the event cannot be null.");
+
+        EventObservable<E> observable = new EventObservable<>();
+
+        Bukkit.getPluginManager().registerEvent(type, observable.listener, EventPriority.MONITOR, (ignored, event) -> {
+            // The listener also receives the subclasses of the event
+            if(!type.isInstance(event))
+                return;
+
+            E typed = type.cast(event);
+            observable.set(typed, typed instanceof PlayerEvent ? ((PlayerEvent) typed).getPlayer() : null);
+        }, plugin, true);
+
+        return observable;
+    }
+
+    public T get() {
+        return value;
+    }
+
+    /**
+     * Sets the value, notifying the subscribers if it is not
+     * equal to the previous value.
+     *
+     * @param value the new value
+     */
+    public void set(T value) {
+        if(swap(value))
+            changed(null);
+    }
+
+    /**
+     * Sets the value for a change which only targets the given player,
+     * notifying the subscribers if it is not equal to the previous value.
+     *
+     * @param value  the new value
+     * @param target the player affected by the change
+     */
+    public void set(T value, Player target) {
+        if(swap(value))
+            changed(target);
+    }
+
+    /**
+     * Updates the value with the given function, atomically
+     * with the other updates and sets of this observable.
+     *
+     * @param update the function computing the new value from the current one
+     * @see #set(Object)
+     */
+    public void update(UnaryOperator<T> update) {
+        boolean changed;
+
+        synchronized(this) {
+            changed = swap(update.apply(this.value));
+        }
+
+        if(changed)
+            changed(null);
+    }
+
+    private synchronized boolean swap(T value) {
+        T previous = this.value;
+        this.value = value;
+
+        return !Objects.equals(previous, value);
+    }
+
+    /**
+     * Notifies the subscribers that the value has changed.
+     *
+     * @param target the player affected by the change, or <code>null</code> if every player is
+     */
+    public void changed(Player target) {
+        for(BiConsumer<Observable<?>, Player> subscriber : this.subscribers)
+            subscriber.accept(this, target);
+    }
+
+    /**
+     * Subscribes to the changes of this observable.
+     *
+     * @param subscriber the subscriber, receiving this observable and the targeted player
+     */
+    public void subscribe(BiConsumer<Observable<?>, Player> subscriber) {
+        this.subscribers.addIfAbsent(subscriber);
+    }
+
+    public void unsubscribe(BiConsumer<Observable<?>, Player> subscriber) {
+        this.subscribers.remove(subscriber);
+    }
+
+    /**
+     * An observable whose value is the last fired event of a type,
+     * created with {@link Observable#ofEvent(Plugin, Class)}.
+     *
+     * @param <E> the type of the event
+     */
+    public static final class EventObservable<E extends Event> extends Observable<E> {
+
+        private final Listener listener = new Listener() {};
+
+        private EventObservable() {
+            super(null);
+        }
+
+        /**
+         * Unregisters the listener of the event, this observable
+         * does not change anymore afterwards.
+         */
+        public void unregister() {
+            HandlerList.unregisterAll(this.listener);
+        }
+
+    }
+
+}
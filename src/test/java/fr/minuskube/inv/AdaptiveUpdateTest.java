@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.headless.FakeItemStack;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveUpdateTest extends HeadlessTest {
+
+    private static final int TICKS = 64;
+
+    @Test
+    public void equalItemsSetAgainBackOff() {
+        AtomicInteger updates = new AtomicInteger();
+
+        // A new, equal but not interned item at every update
+        SmartInventory inventory = inventory("adaptive", provider((player, contents) -> {}, (player, contents) -> {
+            updates.incrementAndGet();
+            contents.set(0, ClickableItem.empty(new FakeItemStack("CLOCK")));
+        })).updateFrequency(1).adaptiveUpdateFrequency(8).build();
+
+        inventory.open(join("adaptive"));
+
+        for(int tick = 0; tick < TICKS; tick++)
+            server.getScheduler().tick();
+
+        UpdateMetrics metrics = inventory.getUpdateMetrics();
+        assertTrue(updates.get() < TICKS / 4, "Updated " + updates.get() + " times in " + TICKS + " ticks");
+        assertEquals(updates.get(), metrics.getUpdates());
+        assertEquals(1, metrics.getEffectiveUpdates());
+    }
+
+    @Test
+    public void itemModifiedInPlaceIsAChange() {
+        Player player = join("modified");
+        inventory("modified", provider((p, contents) -> {})).build().open(player);
+
+        InventoryContents contents = contents(player);
+        FakeItemStack stack = new FakeItemStack("CLOCK");
+
+        contents.set(0, ClickableItem.empty(stack));
+        long changes = contents.getChangeCount();
+
+        contents.set(0, ClickableItem.empty(new FakeItemStack("CLOCK")));
+        assertEquals(changes, contents.getChangeCount());
+
+        stack.setAmount(5);
+        contents.set(0, ClickableItem.empty(stack));
+        assertEquals(changes + 1, contents.getChangeCount());
+    }
+
+}
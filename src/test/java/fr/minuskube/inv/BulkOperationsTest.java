@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.headless.FakeItemStack;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BulkOperationsTest extends HeadlessTest {
+
+    private final AtomicInteger updates = new AtomicInteger();
+
+    private final ClickableItem first = ClickableItem.empty(new FakeItemStack("DIRT"));
+    private final ClickableItem second = ClickableItem.empty(new FakeItemStack("STONE"));
+
+    private SmartInventory inventory;
+    private Player[] viewers;
+    private Player outsider;
+
+    @BeforeEach
+    public void open() {
+        this.inventory = inventory("bulk", provider((player, contents) -> {},
+                (player, contents) -> updates.incrementAndGet())).build();
+        SmartInventory other = inventory("other", provider((player, contents) -> {})).build();
+
+        this.viewers = new Player[] { join("viewer0"), join("viewer1") };
+        for(Player viewer : this.viewers)
+            this.inventory.open(viewer);
+
+        this.outsider = join("outsider");
+        other.open(this.outsider);
+    }
+
+    @Test
+    public void operationsAreAppliedTogetherAtTheNextTick() {
+        int pending = server.getScheduler().getPendingTasks();
+
+        manager.setForAll(inventory, 0, 0, first);
+        manager.setForAll(inventory, 0, 0, second);
+        manager.setForAll(inventory, 0, 1, first);
+        manager.refreshAll(inventory);
+
+        assertEquals(pending + 1, server.getScheduler().getPendingTasks());
+        assertFalse(contents(viewers[0]).get(0, 0).isPresent());
+
+        updates.set(0);
+        server.getScheduler().tick();
+
+        for(Player viewer : viewers) {
+            assertSame(second, contents(viewer).get(0, 0).orElse(null));
+            assertSame(first, contents(viewer).get(0, 1).orElse(null));
+        }
+
+        assertFalse(contents(outsider).get(0, 0).isPresent());
+        assertEquals(viewers.length, updates.get());
+    }
+
+    @Test
+    public void closeAllDropsTheOtherOperations() {
+        manager.setForAll(inventory, 0, 0, first);
+        manager.closeAll(inventory);
+        manager.setForAll(inventory, 0, 1, second);
+
+        server.getScheduler().tick();
+
+        for(Player viewer : viewers)
+            assertFalse(manager.getContents(viewer).isPresent());
+
+        assertTrue(manager.getContents(outsider).isPresent());
+    }
+
+    @Test
+    public void operationsCanBeQueuedFromAnotherThread() throws InterruptedException {
+        Thread thread = new Thread(() -> manager.setForAll(inventory, 0, 0, first));
+        thread.start();
+        thread.join();
+
+        server.getScheduler().tick();
+
+        for(Player viewer : viewers)
+            assertSame(first, contents(viewer).get(0, 0).orElse(null));
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.content.InventoryProvider;
+import fr.minuskube.inv.headless.HeadlessServer;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Base of the tests running SmartInvs on the {@link HeadlessServer}.
+ * <br>
+ * Each test gets its own plugin and {@link InventoryManager}. After the test, the plugin
+ * is disabled, which closes the sessions of the manager, cancels its tasks and unregisters
+ * its listeners, and the players who joined during the test quit.
+ */
+public abstract class HeadlessTest {
+
+    protected final HeadlessServer server = HeadlessServer.get();
+
+    protected Plugin plugin;
+    protected InventoryManager manager;
+    protected HeadlessEvents events;
+
+    private final List<Player> players = new ArrayList<>();
+    private int listeners, tasks;
+
+    @BeforeEach
+    public void startManager() {
+        this.listeners = server.getRegisteredListeners();
+        this.tasks = server.getScheduler().getPendingTasks();
+
+        this.plugin = server.createPlugin(getClass().getSimpleName());
+
+        this.manager = new InventoryManager(this.plugin);
+        this.manager.init();
+
+        this.events = new HeadlessEvents(this.manager);
+    }
+
+    @AfterEach
+    public void stopManager() {
+        server.disable(this.plugin);
+
+        this.players.forEach(server::quit);
+        this.players.clear();
+
+        assertEquals(this.listeners, server.getRegisteredListeners(), "Listeners left registered by the test");
+        assertEquals(this.tasks, server.getScheduler().getPendingTasks(), "Tasks left scheduled by the test");
+    }
+
+    /**
+     * Makes a new player join, who quits after the test.
+     */
+    protected Player join(String name) {
+        Player player = server.join(name);
+        this.players.add(player);
+        return player;
+    }
+
+    /**
+     * Starts building an inventory of the manager of the test.
+     */
+    protected SmartInventory.Builder inventory(String id, InventoryProvider provider) {
+        return SmartInventory.builder()
+                .id(id)
+                .manager(this.manager)
+                .provider(provider);
+    }
+
+    protected InventoryContents contents(Player player) {
+        return this.manager.getContents(player).orElseThrow(() ->
+                new IllegalStateException(player.getName() + " has no opened inventory."));
+    }
+
+    protected static InventoryProvider provider(BiConsumer<Player, InventoryContents> init,
+                                                BiConsumer<Player, InventoryContents> update) {
+        return new InventoryProvider() {
+            @Override
+            public void init(Player player, InventoryContents contents) {
+                init.accept(player, contents);
+            }
+
+            @Override
+            public void update(Player player, InventoryContents contents) {
+                update.accept(player, contents);
+            }
+        };
+    }
+
+    protected static InventoryProvider provider(BiConsumer<Player, InventoryContents> init) {
+        return provider(init, (player, contents) -> {});
+    }
+
+}
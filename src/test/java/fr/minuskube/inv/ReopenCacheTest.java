@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.headless.FakeItemStack;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReopenCacheTest extends HeadlessTest {
+
+    private static final int TTL = 100;
+
+    private final Map<String, Integer> inits = new HashMap<>();
+    private final AtomicBoolean reduced = new AtomicBoolean();
+
+    private SmartInventory inventory;
+
+    @BeforeEach
+    public void build() {
+        this.inventory = inventory("reopen", provider(
+                (player, contents) -> {
+                    inits.merge(player.getName(), 1, Integer::sum);
+
+                    contents.set(0, ClickableItem.empty(new FakeItemStack("DIAMOND")));
+                    contents.set(1, ClickableItem.empty(new FakeItemStack("EMERALD")));
+                },
+                (player, contents) -> {
+                    if(reduced.get())
+                        contents.set(1, null);
+                }))
+                .size(1, 9)
+                .reopenCache(TTL)
+                .build();
+    }
+
+    @Test
+    public void reopenRestoresTheClosedContents() {
+        Player player = join("restored");
+
+        inventory.open(player);
+        InventoryContents closed = contents(player);
+        inventory.close(player);
+
+        inventory.open(player);
+        assertSame(closed, contents(player));
+        assertEquals(1, inits.get("restored"));
+    }
+
+    @Test
+    public void expiredContentsAreInitializedAgain() {
+        Player player = join("expired");
+
+        inventory.open(player);
+        InventoryContents closed = contents(player);
+        inventory.close(player);
+
+        for(int tick = 0; tick <= TTL; tick++)
+            server.getScheduler().tick();
+
+        inventory.open(player);
+        assertNotSame(closed, contents(player));
+        assertEquals(2, inits.get("expired"));
+    }
+
+    @Test
+    public void reopenedInventoryShowsNoStaleSlots() {
+        Player player = join("stale");
+        SmartInventory other = inventory("other", provider((p, contents) -> {})).build();
+
+        inventory.open(player);
+        Inventory handle = player.getOpenInventory().getTopInventory();
+        handle.setItem(5, new FakeItemStack("DIRT"));
+
+        // Replaces the session without its close listener, which would have cleared the inventory
+        other.open(player);
+
+        reduced.set(true);
+        inventory.open(player);
+
+        assertSame(handle, player.getOpenInventory().getTopInventory());
+        assertNotNull(handle.getItem(0));
+        assertNull(handle.getItem(1));
+        assertNull(handle.getItem(5));
+        assertEquals(1, inits.get("stale"));
+    }
+
+    @Test
+    public void cachingAgainMovesTheContentsToTheEnd() {
+        manager.setReopenCacheBudget(2 * 9);
+
+        Player first = join("first");
+        Player second = join("second");
+        Player third = join("third");
+
+        inventory.open(first);
+        inventory.close(first);
+        inventory.open(second);
+        inventory.close(second);
+
+        // Opened with properties, so not restored, then cached again in place of its previous contents
+        inventory.open(first, Collections.singletonMap("refreshed", true));
+        inventory.close(first);
+
+        // Over the budget, the least recently closed contents are dropped
+        inventory.open(third);
+        inventory.close(third);
+
+        inventory.open(first);
+        inventory.open(second);
+
+        assertEquals(2, inits.get("first"));
+        assertEquals(2, inits.get("second"));
+        assertEquals(9, manager.getReopenCacheSize());
+    }
+
+    @Test
+    public void asyncClickIsCancelledEvenIfTheContentsAreRestored() throws Exception {
+        Player player = join("async");
+        CompletableFuture<AsyncClickData> click = new CompletableFuture<>();
+
+        inventory.open(player);
+        contents(player).set(0, ClickableItem.async(new FakeItemStack("DIAMOND"), click::complete));
+
+        events.click(player, 0);
+        AsyncClickData data = click.get(5, TimeUnit.SECONDS);
+        assertFalse(data.isCancelled());
+
+        inventory.close(player);
+        inventory.open(player);
+        assertTrue(data.isCancelled());
+
+        AtomicBoolean synced = new AtomicBoolean();
+        data.sync(contents -> synced.set(true));
+        server.getScheduler().tick();
+        assertFalse(synced.get());
+    }
+
+    @Test
+    public void flowStaysClosedEvenIfTheContentsAreRestored() {
+        Player player = join("flow");
+
+        MenuFlow flow = MenuFlow.start(inventory, player, MenuFlow::awaitClose);
+        assertFalse(flow.isClosed());
+
+        inventory.close(player);
+        inventory.open(player);
+        assertEquals(1, inits.get("flow"));
+        assertTrue(flow.isClosed());
+    }
+
+}
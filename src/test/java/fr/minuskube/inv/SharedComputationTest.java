@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class SharedComputationTest extends HeadlessTest {
+
+    private final AtomicInteger computations = new AtomicInteger();
+    private final SharedComputation<Integer> computation = SharedComputation.builder(computations::incrementAndGet)
+            .maxAge(100)
+            .build();
+
+    @Test
+    public void inventoriesWithTheSameIdDoNotShareTheirValue() {
+        // Both keep the default id
+        SmartInventory first = SmartInventory.builder().manager(manager).provider(provider((p, contents) -> {})).build();
+        SmartInventory second = SmartInventory.builder().manager(manager).provider(provider((p, contents) -> {})).build();
+        assertEquals(first.getId(), second.getId());
+
+        assertEquals(1, computation.get(first));
+        assertEquals(2, computation.get(second));
+        assertEquals(1, computation.get(first));
+
+        computation.invalidate(second);
+        assertEquals(1, computation.get(first));
+    }
+
+    @Test
+    public void valueIsDroppedWithTheLastViewer() {
+        SmartInventory inventory = inventory("shared", provider((p, contents) -> {})).build();
+        SmartInventory other = inventory("other", provider((p, contents) -> {})).build();
+        Player first = join("first"), second = join("second"), third = join("third");
+
+        inventory.open(first);
+        inventory.open(second);
+        other.open(third);
+
+        int value = computation.get(inventory);
+        int otherValue = computation.get(other);
+
+        inventory.close(second);
+        assertEquals(value, computation.get(inventory));
+
+        other.close(third);
+        assertNotEquals(otherValue, computation.get(other));
+        assertEquals(value, computation.get(inventory));
+    }
+
+}
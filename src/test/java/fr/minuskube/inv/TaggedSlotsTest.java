@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv;
+
+import fr.minuskube.inv.content.InventoryContents;
+import fr.minuskube.inv.headless.FakeItemStack;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class TaggedSlotsTest extends HeadlessTest {
+
+    private final ClickableItem untagged = ClickableItem.empty(new FakeItemStack("GLASS_PANE"));
+    private final AtomicInteger renders = new AtomicInteger();
+    private final BiFunction<Player, ClickableItem, ClickableItem> renderer = (player, item) -> {
+        renders.incrementAndGet();
+        return item.cloneWithNewItem(new FakeItemStack("GOLD_NUGGET", player.getName(), renders.get()));
+    };
+
+    private SmartInventory child;
+    private Player first, second;
+
+    @BeforeEach
+    public void open() {
+        SmartInventory inventory = inventory("tagged", provider((player, contents) -> {
+            contents.set(0, ClickableItem.empty(new FakeItemStack("GOLD_NUGGET")).tag("coins"));
+            contents.set(1, ClickableItem.empty(new FakeItemStack("GOLD_INGOT")).tag("coins", "bank"));
+            contents.set(2, untagged);
+        })).build();
+
+        this.child = inventory("child", provider((player, contents) -> {})).build();
+
+        this.first = join("first");
+        this.second = join("second");
+        inventory.open(this.first);
+        inventory.open(this.second);
+    }
+
+    private FakeItemStack item(InventoryContents contents, int slot) {
+        return (FakeItemStack) contents.get(slot).orElseThrow(IllegalStateException::new).getItem();
+    }
+
+    @Test
+    public void onlyTheTaggedSlotsAreRendered() {
+        manager.updateTagged(first, "coins", renderer);
+
+        assertEquals(2, renders.get());
+        assertEquals("first", item(contents(first), 0).getName());
+        assertSame(untagged, contents(first).get(2).orElse(null));
+        assertEquals("GOLD_NUGGET", item(contents(second), 0).getTypeName());
+        assertNull(item(contents(second), 0).getName());
+    }
+
+    @Test
+    public void renderedItemsKeepTheirTags() {
+        manager.updateTagged(first, "bank", renderer);
+        manager.updateTagged(first, "coins", renderer);
+
+        assertEquals(3, renders.get());
+        assertArrayEquals(new int[] { 1 }, contents(first).getTaggedSlots("bank"));
+    }
+
+    @Test
+    public void untaggedItemsLeaveTheIndex() {
+        contents(first).set(0, untagged);
+
+        assertArrayEquals(new int[] { 1 }, contents(first).getTaggedSlots("coins"));
+        manager.updateTagged(first, "coins", renderer);
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    public void suspendedParentsAreRenderedToo() {
+        InventoryContents parent = contents(first);
+        child.openChild(first);
+
+        manager.updateTagged(first, "bank", renderer);
+
+        assertEquals(1, renders.get());
+        assertEquals("first", item(parent, 1).getName());
+    }
+
+    @Test
+    public void updateTaggedForAllRendersEveryViewer() {
+        manager.updateTaggedForAll("coins", renderer);
+
+        assertEquals(4, renders.get());
+        assertEquals("first", item(contents(first), 0).getName());
+        assertEquals("second", item(contents(second), 0).getName());
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.content;
+
+import fr.minuskube.inv.ClickableItem;
+import fr.minuskube.inv.HeadlessTest;
+import fr.minuskube.inv.headless.FakeItemStack;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@SuppressWarnings("deprecation")
+public class AllItemsTest extends HeadlessTest {
+
+    private final ClickableItem dirt = ClickableItem.empty(new FakeItemStack("DIRT"));
+    private final ClickableItem stone = ClickableItem.empty(new FakeItemStack("STONE"));
+
+    // Put in the array returned by all() by the next update
+    private final AtomicReference<ClickableItem> updated = new AtomicReference<>();
+
+    private Player player;
+    private InventoryContents contents;
+    private Inventory handle;
+
+    @BeforeEach
+    public void open() {
+        this.player = join("all");
+
+        inventory("all", provider((player, contents) -> contents.set(0, 0, dirt), (player, contents) -> {
+            ClickableItem item = updated.getAndSet(null);
+            if(item != null)
+                contents.all()[2][4] = item;
+        })).size(3, 9).updateFrequency(1).build().open(this.player);
+
+        this.contents = contents(this.player);
+        this.handle = this.player.getOpenInventory().getTopInventory();
+    }
+
+    @Test
+    public void itemsPutInTheArrayAreSet() {
+        ClickableItem[][] all = contents.all();
+        assertSame(dirt, all[0][0]);
+
+        all[1][2] = stone;
+        all[0][0] = null;
+
+        assertSame(stone, contents.get(1, 2).orElse(null));
+        assertEquals(stone.getItem(player), handle.getItem(11));
+        assertFalse(contents.get(0, 0).isPresent());
+        assertNull(handle.getItem(0));
+
+        contents.set(0, 1, dirt);
+        assertSame(all, contents.all());
+        assertSame(dirt, all[0][1]);
+    }
+
+    @Test
+    public void itemsPutInTheArrayByAnUpdateAreDisplayed() {
+        contents.all();
+        updated.set(stone);
+
+        server.getScheduler().tick();
+
+        assertEquals(stone.getItem(player), handle.getItem(22));
+    }
+
+    @Test
+    public void copyIsNotSet() {
+        ClickableItem[][] copy = contents.copyAll();
+        assertArrayEquals(new ClickableItem[] { dirt, null, null, null, null, null, null, null, null }, copy[0]);
+
+        copy[1][2] = stone;
+
+        assertFalse(contents.get(1, 2).isPresent());
+        assertNull(handle.getItem(11));
+    }
+
+}
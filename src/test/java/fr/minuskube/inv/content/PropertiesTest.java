@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.content;
+
+import fr.minuskube.inv.HeadlessTest;
+import fr.minuskube.inv.SmartInventory;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PropertiesTest extends HeadlessTest {
+
+    private SmartInventory inventory;
+    private Player player;
+    private InventoryContents contents;
+
+    @BeforeEach
+    public void open() {
+        this.inventory = inventory("properties", provider((player, contents) -> {})).build();
+
+        this.player = join("properties");
+        this.inventory.open(this.player);
+        this.contents = contents(this.player);
+    }
+
+    @Test
+    public void boxedValuesOfPrimitiveKeysAreSet() {
+        PropertyKey.IntKey page = PropertyKey.ofInt("page", 0);
+        PropertyKey<Boolean> allowShift = PropertyKey.ALLOW_SHIFT;
+        PropertyKey<Integer> boxedPage = page;
+
+        // Selects the generic method, which used to call itself instead of the primitive one
+        contents.setProperty(allowShift, Boolean.TRUE);
+        contents.setProperty(boxedPage, Integer.valueOf(3));
+
+        assertTrue(contents.property(PropertyKey.ALLOW_SHIFT));
+        assertEquals(3, contents.property(page));
+    }
+
+    @Test
+    public void namedKeySharesItsValueWithTheStringApi() {
+        contents.setProperty("allowShift", true);
+        assertTrue(contents.property(PropertyKey.ALLOW_SHIFT));
+
+        contents.setProperty(PropertyKey.ALLOW_SHIFT, false);
+        assertEquals(Boolean.FALSE, contents.property("allowShift"));
+        assertEquals(Boolean.FALSE, contents.getProperties().get("allowShift"));
+    }
+
+    @Test
+    public void valueOfAnotherTypeIsKeptByName() {
+        contents.setProperty(PropertyKey.ALLOW_SHIFT, true);
+        contents.setProperty("allowShift", "yes");
+
+        assertEquals("yes", contents.property("allowShift"));
+        assertFalse(contents.property(PropertyKey.ALLOW_SHIFT));
+
+        contents.setProperty("allowShift", true);
+        assertEquals(Boolean.TRUE, contents.property("allowShift"));
+        assertEquals(Collections.singletonMap("allowShift", true), contents.getProperties());
+    }
+
+    @Test
+    public void openPropertiesFillNamedKeys() {
+        inventory.open(player, Collections.singletonMap("allowShift", true));
+
+        assertTrue(contents(player).property(PropertyKey.ALLOW_SHIFT));
+    }
+
+    @Test
+    public void propertiesAreALiveView() {
+        Map<String, Object> properties = contents.getProperties();
+
+        contents.setProperty("page", 2);
+        contents.setProperty(PropertyKey.ALLOW_SHIFT, true);
+        assertEquals(2, properties.get("page"));
+        assertTrue(properties.containsKey("allowShift"));
+        assertEquals(2, properties.size());
+
+        properties.put("owner", "Notch");
+        assertEquals("Notch", contents.property("owner"));
+
+        properties.remove("page");
+        assertNull(contents.property("page"));
+
+        for(Iterator<String> it = properties.keySet().iterator(); it.hasNext(); ) {
+            if(it.next().equals("allowShift"))
+                it.remove();
+        }
+
+        assertFalse(contents.property(PropertyKey.ALLOW_SHIFT));
+        assertEquals(Collections.singletonMap("owner", "Notch"), properties);
+    }
+
+    @Test
+    public void keysWithTheSameNameAreDistinct() {
+        PropertyKey<String> first = PropertyKey.of("owner", String.class, "nobody");
+        PropertyKey<String> second = PropertyKey.of("owner", String.class, "nobody");
+
+        contents.setProperty(first, "Notch");
+
+        assertEquals("Notch", contents.property(first));
+        assertEquals("nobody", contents.property(second));
+        assertFalse(PropertyKey.byName("owner").isPresent());
+    }
+
+}
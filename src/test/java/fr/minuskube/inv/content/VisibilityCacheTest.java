@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018-2020 Isaac Montagne
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package fr.minuskube.inv.content;
+
+import fr.minuskube.inv.ClickableItem;
+import fr.minuskube.inv.HeadlessTest;
+import fr.minuskube.inv.headless.FakeItemStack;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class VisibilityCacheTest extends HeadlessTest {
+
+    private final AtomicInteger tests = new AtomicInteger();
+    private final AtomicBoolean visible = new AtomicBoolean(true);
+    private final Predicate<Player> canSee = player -> {
+        tests.incrementAndGet();
+        return visible.get();
+    };
+
+    private Player player;
+    private InventoryContents contents;
+
+    @BeforeEach
+    public void open() {
+        this.player = join("visibility");
+
+        inventory("visibility", provider((player, contents) -> {
+            for(int slot = 0; slot < 54; slot++)
+                contents.set(slot, item());
+        })).size(6, 9).build().open(this.player);
+
+        this.contents = contents(this.player);
+    }
+
+    private ClickableItem item() {
+        return ClickableItem.from(new FakeItemStack("DIAMOND"), data -> {}).canSee(canSee, new FakeItemStack("GLASS_PANE"));
+    }
+
+    @Test
+    public void testsEachPredicateOncePerRenderPass() {
+        assertEquals(1, tests.get());
+
+        contents.set(0, item());
+        assertEquals(1, tests.get());
+    }
+
+    @Test
+    public void invalidateVisibilityRunsTheTestsAgain() {
+        manager.invalidateVisibility(player);
+
+        contents.set(0, item());
+        contents.set(1, item());
+        assertEquals(2, tests.get());
+    }
+
+    @Test
+    public void nextTickRunsTheTestsAgain() {
+        server.getScheduler().tick();
+
+        contents.set(0, item());
+        assertEquals(2, tests.get());
+    }
+
+    @Test
+    public void clickRunsTheTestsAgain() {
+        AtomicInteger clicks = new AtomicInteger();
+        contents.set(0, ClickableItem.from(new FakeItemStack("DIAMOND"), data -> clicks.incrementAndGet()).canSee(canSee));
+
+        events.click(player, 0);
+        assertEquals(1, clicks.get());
+
+        // Still memoized as visible for this tick, but the click must not rely on it
+        visible.set(false);
+        events.click(player, 0);
+        assertEquals(1, clicks.get());
+    }
+
+}